@@ -0,0 +1,116 @@
+package com.progbits.db.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.progbits.db.dataaccess.DataManager;
+
+/**
+ * Shared setup for the benchmarks.
+ *
+ * <p>Configures two pools through ConfigProvider properties on an embedded H2
+ * database: the default pool, and a SMALL pool of DB_MAXCONNECTIONS_SMALL
+ * connections for contention runs. Any property already set with -D or in
+ * the environment is left alone, so the same benchmarks can run against
+ * another database.</p>
+ *
+ * @author kscarr73
+ */
+public final class BenchmarkDb {
+
+    public static final String SMALL = "SMALL";
+    public static final String TABLE = "bench_item";
+    public static final int ROWS = 10000;
+
+    private static final String SQL_DROP = "DROP TABLE IF EXISTS bench_item";
+    private static final String SQL_CREATE = """
+        CREATE TABLE bench_item (
+            id INT AUTO_INCREMENT PRIMARY KEY,
+            name VARCHAR(50),
+            category INT,
+            amount DECIMAL(12,2),
+            created TIMESTAMP
+        )""";
+
+    private BenchmarkDb() {
+    }
+
+    /**
+     * Start DataManager on the benchmark pools
+     *
+     * @return The configured DataManager
+     */
+    public static synchronized DataManager start() {
+        setDefault("DB_HOST", "jdbc:h2:mem:");
+        setDefault("DB_NAME", "bench;DB_CLOSE_DELAY=-1");
+        setDefault("DB_MAXCONNECTIONS", "10");
+
+        setDefault("DB_HOST_" + SMALL, System.getProperty("DB_HOST"));
+        setDefault("DB_NAME_" + SMALL, System.getProperty("DB_NAME"));
+        setDefault("DB_MAXCONNECTIONS_" + SMALL, "2");
+
+        if (System.getProperty("DB_USER") != null) {
+            setDefault("DB_USER_" + SMALL, System.getProperty("DB_USER"));
+            setDefault("DB_PASSWORD_" + SMALL, System.getProperty("DB_PASSWORD"));
+        }
+
+        return DataManager.getInstance();
+    }
+
+    /**
+     * Recreate bench_item with ROWS rows
+     *
+     * @param db The configured DataManager
+     * @throws ApiException
+     */
+    public static void createTable(DataManager db) throws ApiException {
+        db.executeSQL(DataManager.DEFAULT, SQL_DROP, new ApiObject());
+        db.executeSQL(DataManager.DEFAULT, SQL_CREATE, new ApiObject());
+
+        db.saveAllIntegerKey(DataManager.DEFAULT, TABLE, "id", newRows(ROWS));
+    }
+
+    /**
+     * Remove every row from bench_item
+     *
+     * @param db The configured DataManager
+     * @throws ApiException
+     */
+    public static void clearTable(DataManager db) throws ApiException {
+        db.executeSQL(DataManager.DEFAULT, "DELETE FROM bench_item", new ApiObject());
+    }
+
+    /**
+     * Build rows for bench_item without an id
+     *
+     * @param count Rows to build
+     * @return New rows
+     */
+    public static List<ApiObject> newRows(int count) {
+        List<ApiObject> rows = new ArrayList<>(count);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        for (int i = 0; i < count; i++) {
+            ApiObject row = new ApiObject();
+
+            row.setString("name", "Item " + i);
+            row.setInteger("category", i % 100);
+            row.setDecimal("amount", BigDecimal.valueOf(i, 2));
+            row.setDateTime("created", now);
+
+            rows.add(row);
+        }
+
+        return rows;
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null && System.getenv(key) == null && value != null) {
+            System.setProperty(key, value);
+        }
+    }
+}
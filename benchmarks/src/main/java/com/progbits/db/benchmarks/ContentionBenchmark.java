@@ -0,0 +1,68 @@
+package com.progbits.db.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.progbits.db.dataaccess.DataManager;
+
+/**
+ * Many threads sharing the SMALL pool, to measure pool wait and queueing
+ *
+ * <p>Change the thread count with -t and the pool size with
+ * -jvmArgsAppend -DDB_MAXCONNECTIONS_SMALL=n.</p>
+ *
+ * @author kscarr73
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ContentionBenchmark {
+
+    private static final String SQL_ID = "SELECT id, name, category, amount, created FROM bench_item WHERE id = :{id}";
+    private static final String SQL_UPDATE = "UPDATE bench_item SET amount = amount + 1 WHERE id = :{id}";
+
+    private DataManager db;
+
+    @Setup
+    public void setup() throws ApiException {
+        db = BenchmarkDb.start();
+
+        BenchmarkDb.createTable(db);
+    }
+
+    private ApiObject nextSearch() {
+        ApiObject search = new ApiObject();
+
+        search.setInteger("id", ThreadLocalRandom.current().nextInt(1, BenchmarkDb.ROWS));
+
+        return search;
+    }
+
+    @Benchmark
+    public ApiObject read() throws ApiException {
+        return db.getSQLFirstRow(BenchmarkDb.SMALL, SQL_ID, nextSearch());
+    }
+
+    @Benchmark
+    public Integer write() throws ApiException {
+        return db.executeSQL(BenchmarkDb.SMALL, SQL_UPDATE, nextSearch());
+    }
+}
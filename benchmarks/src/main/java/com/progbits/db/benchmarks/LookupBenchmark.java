@@ -0,0 +1,66 @@
+package com.progbits.db.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.progbits.db.dataaccess.DataManager;
+
+/**
+ * Single threaded lookups by column through the default pool
+ *
+ * @author kscarr73
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final String SQL_ID = "SELECT id, name, category, amount, created FROM bench_item WHERE id = :{id}";
+
+    private DataManager db;
+
+    @Setup
+    public void setup() throws ApiException {
+        db = BenchmarkDb.start();
+
+        BenchmarkDb.createTable(db);
+    }
+
+    private int nextId() {
+        return ThreadLocalRandom.current().nextInt(1, BenchmarkDb.ROWS);
+    }
+
+    @Benchmark
+    public ApiObject getTable() throws ApiException {
+        ApiObject search = new ApiObject();
+
+        search.setInteger("category", nextId() % 100);
+
+        return db.getTable(DataManager.DEFAULT, BenchmarkDb.TABLE, search);
+    }
+
+    @Benchmark
+    public ApiObject getSQLFirstRow() throws ApiException {
+        ApiObject search = new ApiObject();
+
+        search.setInteger("id", nextId());
+
+        return db.getSQLFirstRow(DataManager.DEFAULT, SQL_ID, search);
+    }
+}
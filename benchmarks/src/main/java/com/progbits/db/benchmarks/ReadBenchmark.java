@@ -0,0 +1,71 @@
+package com.progbits.db.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.progbits.db.dataaccess.DataManager;
+
+/**
+ * Single threaded range reads of {@link #rows} rows through the default pool
+ *
+ * @author kscarr73
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    private static final String SQL_RANGE = "SELECT id, name, category, amount, created FROM bench_item WHERE id >= :{fromId} AND id < :{toId}";
+    private static final String SQL_RANGE_ARGS = "SELECT id, name, category, amount, created FROM bench_item WHERE id >= ? AND id < ?";
+
+    @Param({"1", "100"})
+    public int rows;
+
+    private DataManager db;
+
+    @Setup
+    public void setup() throws ApiException {
+        db = BenchmarkDb.start();
+
+        BenchmarkDb.createTable(db);
+    }
+
+    private int nextId() {
+        return ThreadLocalRandom.current().nextInt(1, BenchmarkDb.ROWS - rows);
+    }
+
+    @Benchmark
+    public ApiObject getSQLRowsApiObject() throws ApiException {
+        int fromId = nextId();
+        ApiObject search = new ApiObject();
+
+        search.setInteger("fromId", fromId);
+        search.setInteger("toId", fromId + rows);
+
+        return db.getSQLRows(DataManager.DEFAULT, SQL_RANGE, search);
+    }
+
+    @Benchmark
+    public ApiObject getSQLRowsArgs() throws ApiException {
+        int fromId = nextId();
+
+        return db.getSQLRows(DataManager.DEFAULT, SQL_RANGE_ARGS, new Object[]{fromId, fromId + rows});
+    }
+}
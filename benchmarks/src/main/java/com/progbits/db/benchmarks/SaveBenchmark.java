@@ -0,0 +1,68 @@
+package com.progbits.db.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.progbits.db.dataaccess.DataManager;
+
+/**
+ * Single row saves compared to batched saves, scored per row saved
+ *
+ * @author kscarr73
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveBenchmark {
+
+    private static final int SAVE_ROWS = 100;
+
+    private DataManager db;
+
+    @Setup
+    public void setup() throws ApiException {
+        db = BenchmarkDb.start();
+
+        BenchmarkDb.createTable(db);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() throws ApiException {
+        BenchmarkDb.clearTable(db);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAVE_ROWS)
+    public void saveIntegerKey(Blackhole bh) throws ApiException {
+        for (ApiObject row : BenchmarkDb.newRows(SAVE_ROWS)) {
+            bh.consume(db.saveIntegerKey(DataManager.DEFAULT, BenchmarkDb.TABLE, "id", row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAVE_ROWS)
+    public ApiObject saveAllIntegerKey() throws ApiException {
+        List<ApiObject> rows = BenchmarkDb.newRows(SAVE_ROWS);
+
+        return db.saveAllIntegerKey(DataManager.DEFAULT, BenchmarkDb.TABLE, "id", rows);
+    }
+}
@@ -0,0 +1,379 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Saves a list of ApiObjects using JDBC batches on a single Connection.
+ *
+ * <p>Rows are grouped by operation and by the set of fields they contain, so
+ * each group shares one PreparedStatement. The caller owns the transaction.</p>
+ *
+ * @author kscarr73
+ */
+final class BatchSaver {
+
+    /**
+     * How the id field of a table is populated
+     */
+    enum KeyMode {
+        /**
+         * Database generated Integer key
+         */
+        INTEGER_KEY,
+        /**
+         * Database generated String key
+         */
+        STRING_KEY,
+        /**
+         * Caller supplied String id, insert if update finds no row
+         */
+        STRING_ID
+    }
+
+    // Oracle allows at most 1000 values in an IN list
+    private static final int MAX_IN_LIST = 1000;
+
+    private final String tableName;
+    private final String id;
+    private final KeyMode keyMode;
+    private final int batchSize;
+
+    private final List<ApiObject> errors = new ArrayList<>();
+
+    // Rows given a generated key by this saver, the key is gone if the transaction rolls back
+    private final List<ApiObject> keyed = new ArrayList<>();
+
+    BatchSaver(String tableName, String id, KeyMode keyMode, int batchSize) {
+        this.tableName = tableName;
+        this.id = id;
+        this.keyMode = keyMode;
+        this.batchSize = batchSize;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Errors found during save, each with row index and message
+     *
+     * @return List of errors, empty if all rows saved
+     */
+    List<ApiObject> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Remove the keys this saver set, after the transaction was rolled back.
+     * Otherwise a retry would update rows that were never inserted.
+     */
+    void clearGeneratedKeys() {
+        for (ApiObject row : keyed) {
+            row.remove(id);
+        }
+
+        keyed.clear();
+    }
+
+    /**
+     * Save all rows, setting generated keys into each row. If the
+     * transaction is rolled back, call {@link #clearGeneratedKeys()}.
+     *
+     * @param conn Connection with autocommit off
+     * @param rows Rows to save
+     * @return true if every row saved
+     * @throws SQLException
+     */
+    boolean save(Connection conn, List<ApiObject> rows) throws SQLException {
+        Map<String, List<Integer>> inserts = new LinkedHashMap<>();
+        Map<String, List<Integer>> updates = new LinkedHashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        List<Integer> idOnly = new ArrayList<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            ApiObject row = rows.get(i);
+
+            if (keyMode == KeyMode.STRING_ID || row.isSet(id)) {
+                if (!row.isSet(id)) {
+                    addError(i, "Missing Id Field: " + id);
+                    continue;
+                }
+
+                if (fields(row, false).isEmpty()) {
+                    // Nothing to update, only the id is present
+                    if (keyMode == KeyMode.STRING_ID) {
+                        idOnly.add(i);
+                    }
+                } else {
+                    updates.computeIfAbsent(updateSql(row), k -> new ArrayList<>()).add(i);
+                }
+            } else {
+                inserts.computeIfAbsent(insertSql(row, false), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            return false;
+        }
+
+        for (var entry : updates.entrySet()) {
+            if (!runUpdates(conn, entry.getKey(), entry.getValue(), rows, missing)) {
+                return false;
+            }
+        }
+
+        addMissing(conn, idOnly, rows, missing);
+
+        // STRING_ID upserts: rows the update did not find are inserted
+        for (Integer idx : missing) {
+            inserts.computeIfAbsent(insertSql(rows.get(idx), true), k -> new ArrayList<>()).add(idx);
+        }
+
+        for (var entry : inserts.entrySet()) {
+            if (!runInserts(conn, entry.getKey(), entry.getValue(), rows)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean runUpdates(Connection conn, String sql, List<Integer> idxs, List<ApiObject> rows, List<Integer> missing) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int start = 0; start < idxs.size(); start += batchSize) {
+                List<Integer> chunk = idxs.subList(start, Math.min(start + batchSize, idxs.size()));
+
+                for (Integer idx : chunk) {
+                    ApiObject row = rows.get(idx);
+                    int col = bindFields(ps, row, false);
+
+                    ps.setObject(col, row.get(id));
+                    ps.addBatch();
+                }
+
+                int[] counts;
+
+                try {
+                    counts = ps.executeBatch();
+                } catch (BatchUpdateException bux) {
+                    addBatchErrors(chunk, bux);
+                    return false;
+                }
+
+                if (keyMode == KeyMode.STRING_ID) {
+                    if (hasCounts(counts, chunk.size())) {
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] == 0) {
+                                missing.add(chunk.get(i));
+                            }
+                        }
+                    } else {
+                        // Driver did not say which rows it updated, look for them
+                        addMissing(conn, chunk, rows, missing);
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean hasCounts(int[] counts, int size) {
+        if (counts.length != size) {
+            return false;
+        }
+
+        for (int count : counts) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Add the rows of idxs whose id is not in the table to missing
+     */
+    private void addMissing(Connection conn, List<Integer> idxs, List<ApiObject> rows, List<Integer> missing) throws SQLException {
+        for (int start = 0; start < idxs.size(); start += MAX_IN_LIST) {
+            List<Integer> chunk = idxs.subList(start, Math.min(start + MAX_IN_LIST, idxs.size()));
+            StringBuilder sb = new StringBuilder("SELECT ").append(id).append(" FROM ").append(tableName)
+                .append(" WHERE ").append(id).append(" IN (");
+
+            for (int i = 0; i < chunk.size(); i++) {
+                sb.append(i == 0 ? "?" : ", ?");
+            }
+
+            Set<String> found = new HashSet<>();
+
+            try (PreparedStatement ps = conn.prepareStatement(sb.append(")").toString())) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setObject(i + 1, rows.get(chunk.get(i)).get(id));
+                }
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found.add(rs.getString(1));
+                    }
+                }
+            }
+
+            for (Integer idx : chunk) {
+                if (!found.contains(String.valueOf(rows.get(idx).get(id)))) {
+                    missing.add(idx);
+                }
+            }
+        }
+    }
+
+    private boolean runInserts(Connection conn, String sql, List<Integer> idxs, List<ApiObject> rows) throws SQLException {
+        boolean generated = keyMode != KeyMode.STRING_ID;
+
+        try (PreparedStatement ps = generated
+            ? conn.prepareStatement(sql, new String[]{id})
+            : conn.prepareStatement(sql, Statement.NO_GENERATED_KEYS)) {
+            for (int start = 0; start < idxs.size(); start += batchSize) {
+                List<Integer> chunk = idxs.subList(start, Math.min(start + batchSize, idxs.size()));
+
+                for (Integer idx : chunk) {
+                    bindFields(ps, rows.get(idx), keyMode == KeyMode.STRING_ID);
+                    ps.addBatch();
+                }
+
+                try {
+                    ps.executeBatch();
+                } catch (BatchUpdateException bux) {
+                    addBatchErrors(chunk, bux);
+                    return false;
+                }
+
+                if (generated) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        int i = 0;
+
+                        while (rs.next() && i < chunk.size()) {
+                            ApiObject row = rows.get(chunk.get(i));
+
+                            if (keyMode == KeyMode.INTEGER_KEY) {
+                                row.setInteger(id, rs.getInt(1));
+                            } else {
+                                row.setString(id, rs.getString(1));
+                            }
+
+                            keyed.add(row);
+                            i++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void addBatchErrors(List<Integer> chunk, BatchUpdateException bux) {
+        int errorCount = errors.size();
+        int[] counts = bux.getUpdateCounts();
+
+        if (counts == null || counts.length < chunk.size()) {
+            // Driver stopped at the first failure
+            int failed = counts == null ? 0 : counts.length;
+
+            addError(chunk.get(failed), bux.getMessage());
+
+            for (int i = failed + 1; i < chunk.size(); i++) {
+                addError(chunk.get(i), "Not Executed");
+            }
+        } else {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    addError(chunk.get(i), bux.getMessage());
+                }
+            }
+        }
+
+        if (errors.size() == errorCount) {
+            addError(chunk.get(0), bux.getMessage());
+        }
+    }
+
+    private void addError(int idx, String message) {
+        ApiObject error = new ApiObject();
+
+        error.setInteger("row", idx);
+        error.setString("message", message);
+
+        errors.add(error);
+    }
+
+    private int bindFields(PreparedStatement ps, ApiObject row, boolean includeId) throws SQLException {
+        int col = 1;
+
+        for (String field : fields(row, includeId)) {
+            ps.setObject(col++, row.get(field));
+        }
+
+        return col;
+    }
+
+    private String insertSql(ApiObject row, boolean includeId) {
+        List<String> fields = fields(row, includeId);
+
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        sb.append(String.join(", ", fields)).append(") VALUES (");
+
+        for (int i = 0; i < fields.size(); i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+
+        return sb.append(")").toString();
+    }
+
+    private String updateSql(ApiObject row) {
+        StringBuilder sb = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+
+        List<String> fields = fields(row, false);
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(fields.get(i)).append("=?");
+        }
+
+        return sb.append(" WHERE ").append(id).append("=?").toString();
+    }
+
+    private List<String> fields(ApiObject row, boolean includeId) {
+        List<String> fields = new ArrayList<>();
+
+        for (String key : row.keySet()) {
+            Object value = row.get(key);
+
+            if (value instanceof ApiObject || value instanceof List) {
+                continue;
+            }
+
+            if (includeId || !key.equals(id)) {
+                fields.add(key);
+            }
+        }
+
+        return fields;
+    }
+}
@@ -0,0 +1,207 @@
+package com.progbits.db.dataaccess;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Inserts a large number of rows using the fastest path the driver offers.
+ *
+ * <ul>
+ * <li>PostgreSQL: COPY FROM STDIN through CopyManager</li>
+ * <li>MariaDB: LOAD DATA LOCAL INFILE from an in memory stream</li>
+ * <li>Others: JDBC batches of DB_BATCHSIZE in one transaction</li>
+ * </ul>
+ *
+ * <p>Rows are pulled from the Iterator as they are sent, so only one buffer
+ * or one batch of rows is held at a time.</p>
+ *
+ * @author kscarr73
+ */
+final class BulkLoader {
+
+    static final String METHOD_COPY = "COPY";
+    static final String METHOD_LOAD_DATA = "LOAD DATA";
+    static final String METHOD_BATCH = "BATCH";
+
+    private final String tableName;
+    private final List<String> columns = new ArrayList<>();
+    private final List<String> fields = new ArrayList<>();
+    private final int batchSize;
+
+    private String method;
+
+    /**
+     * @param tableName The table to load
+     * @param columnFields Column name to ApiObject field, in column order
+     * @param batchSize Rows per batch when no fast path is available
+     */
+    BulkLoader(String tableName, Map<String, String> columnFields, int batchSize) {
+        this.tableName = tableName;
+        this.batchSize = batchSize;
+
+        for (var entry : columnFields.entrySet()) {
+            columns.add(entry.getKey());
+            fields.add(entry.getValue());
+        }
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Load every row
+     *
+     * @param conn Connection in autocommit mode
+     * @param dialect Dialect of the pool
+     * @param rows Rows to insert
+     * @return Rows inserted
+     * @throws SQLException
+     * @throws IOException if a value can not be sent
+     */
+    long load(Connection conn, DbDialect dialect, Iterator<ApiObject> rows) throws SQLException, IOException {
+        if (dialect == DbDialect.POSTGRESQL && PgCopy.supported(conn)) {
+            method = METHOD_COPY;
+
+            return PgCopy.copy(conn, copySql(), new TsvRowStream(rows, fields, dateColumns(conn), dialect));
+        } else if (dialect == DbDialect.MARIADB && MariaDbLoad.supported(conn)) {
+            method = METHOD_LOAD_DATA;
+
+            return MariaDbLoad.load(conn, loadDataSql(), new TsvRowStream(rows, fields, dateColumns(conn), dialect));
+        }
+
+        method = METHOD_BATCH;
+
+        return loadBatches(conn, rows);
+    }
+
+    /**
+     * Which columns are DATE, so their values are sent as a day and not an
+     * instant
+     */
+    private boolean[] dateColumns(Connection conn) throws SQLException {
+        boolean[] dates = new boolean[columns.size()];
+
+        try (Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT " + String.join(", ", columns) + " FROM " + tableName + " WHERE 1=0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = meta.getColumnType(i + 1) == Types.DATE;
+            }
+        }
+
+        return dates;
+    }
+
+    private String copySql() {
+        return "COPY " + tableName + " (" + String.join(", ", columns) + ") FROM STDIN";
+    }
+
+    private String loadDataSql() {
+        return "LOAD DATA LOCAL INFILE 'bulkload.tsv' INTO TABLE " + tableName
+            + " CHARACTER SET utf8mb4 (" + String.join(", ", columns) + ")";
+    }
+
+    private long loadBatches(Connection conn, Iterator<ApiObject> rows) throws SQLException {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+
+        sb.append(String.join(", ", columns)).append(") VALUES (");
+
+        for (int i = 0; i < columns.size(); i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+
+        sb.append(")");
+
+        boolean autoCommit = conn.getAutoCommit();
+        long count = 0;
+
+        conn.setAutoCommit(false);
+
+        try (PreparedStatement ps = conn.prepareStatement(sb.toString(), Statement.NO_GENERATED_KEYS)) {
+            int pending = 0;
+
+            while (rows.hasNext()) {
+                ApiObject row = rows.next();
+
+                for (int i = 0; i < fields.size(); i++) {
+                    ps.setObject(i + 1, row.get(fields.get(i)));
+                }
+
+                ps.addBatch();
+
+                if (++pending == batchSize) {
+                    ps.executeBatch();
+                    count += pending;
+                    pending = 0;
+                }
+            }
+
+            if (pending > 0) {
+                ps.executeBatch();
+                count += pending;
+            }
+
+            conn.commit();
+        } catch (SQLException | RuntimeException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        return count;
+    }
+
+    /**
+     * Kept apart so the PostgreSQL driver is only loaded when used
+     */
+    private static final class PgCopy {
+
+        static boolean supported(Connection conn) throws SQLException {
+            return conn.isWrapperFor(org.postgresql.PGConnection.class);
+        }
+
+        static long copy(Connection conn, String sql, TsvRowStream in) throws SQLException, IOException {
+            org.postgresql.copy.CopyManager copyManager = conn.unwrap(org.postgresql.PGConnection.class).getCopyAPI();
+
+            return copyManager.copyIn(sql, in, 64 * 1024);
+        }
+    }
+
+    /**
+     * Kept apart so the MariaDB driver is only loaded when used
+     */
+    private static final class MariaDbLoad {
+
+        static boolean supported(Connection conn) throws SQLException {
+            return conn.isWrapperFor(org.mariadb.jdbc.Connection.class);
+        }
+
+        static long load(Connection conn, String sql, TsvRowStream in) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                // The driver sends this stream in place of the named file
+                stmt.unwrap(org.mariadb.jdbc.Statement.class).setLocalInfileInputStream(in);
+
+                stmt.execute(sql);
+
+                long count = stmt.getLargeUpdateCount();
+
+                return count < 0 ? in.getRowCount() : count;
+            }
+        }
+    }
+}
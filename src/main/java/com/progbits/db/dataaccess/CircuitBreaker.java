@@ -0,0 +1,214 @@
+package com.progbits.db.dataaccess;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Fails calls to a pool at once while the database is failing or slow.
+ *
+ * <p>Connection use is counted over the last 10 seconds. Once at least 20
+ * uses were seen and DB_BREAKER_RATE percent of them failed with a connection
+ * error or timeout, or took longer than DB_BREAKER_SLOW_MS, the breaker opens
+ * and calls fail with {@link #CIRCUIT_OPEN}. After DB_BREAKER_OPEN_MS one call
+ * is let through as a probe, if it works the breaker closes again.</p>
+ *
+ * @author kscarr73
+ */
+final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * ApiException code while the breaker is open
+     */
+    static final int CIRCUIT_OPEN = 512;
+
+    private static final int BUCKETS = 10;
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MIN_CALLS = 20;
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failurePercent;
+    private final long slowNanos;
+    private final long openNanos;
+
+    private final long[] bucketEpoch = new long[BUCKETS];
+    private final int[] calls = new int[BUCKETS];
+    private final int[] failures = new int[BUCKETS];
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt = 0;
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    private long opened = 0;
+    private long rejected = 0;
+
+    /**
+     * @param name Pool name for messages
+     * @param failurePercent Percent of failed or slow uses that opens the
+     * breaker
+     * @param slowNanos Uses longer than this count as failed, 0 to only count
+     * errors
+     * @param openNanos Time to stay open before a probe
+     */
+    CircuitBreaker(String name, int failurePercent, long slowNanos, long openNanos) {
+        this.name = name;
+        this.failurePercent = failurePercent;
+        this.slowNanos = slowNanos;
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * Check a call may go to the database
+     *
+     * @return true if the call is the probe of a half open breaker
+     * @throws ApiException CIRCUIT_OPEN if the breaker is open, or half open
+     * with a probe already running
+     */
+    boolean allow() throws ApiException {
+        State current = state;
+
+        if (current == State.CLOSED) {
+            return false;
+        }
+
+        if (current == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            synchronized (this) {
+                if (state == State.OPEN) {
+                    state = State.HALF_OPEN;
+                    probing.set(false);
+                }
+            }
+        }
+
+        if (state == State.HALF_OPEN && probing.compareAndSet(false, true)) {
+            return true;
+        }
+
+        synchronized (this) {
+            rejected++;
+        }
+
+        throw new ApiException(CIRCUIT_OPEN, "Db Circuit Open: " + name);
+    }
+
+    /**
+     * Record how a connection use went
+     *
+     * @param holdNanos Time waiting for the connection plus time spent in
+     * calls on it
+     * @param failed true if it failed with a connection error or timeout
+     * @param probe The value allow returned for the call
+     */
+    void record(long holdNanos, boolean failed, boolean probe) {
+        boolean bad = failed || (slowNanos > 0 && holdNanos > slowNanos);
+
+        if (state == State.HALF_OPEN) {
+            // Only the probe decides, calls started before the breaker opened do not
+            if (probe) {
+                synchronized (this) {
+                    if (bad) {
+                        trip("Probe Failed");
+                    } else {
+                        reset();
+                        log.info("Db {} Circuit Closed", name);
+                    }
+                }
+            }
+
+            return;
+        }
+
+        if (state == State.OPEN) {
+            return;
+        }
+
+        synchronized (this) {
+            long epoch = System.nanoTime() / BUCKET_NANOS;
+            int idx = (int) (epoch % BUCKETS);
+
+            if (bucketEpoch[idx] != epoch) {
+                bucketEpoch[idx] = epoch;
+                calls[idx] = 0;
+                failures[idx] = 0;
+            }
+
+            calls[idx]++;
+
+            if (!bad) {
+                return;
+            }
+
+            failures[idx]++;
+
+            int totalCalls = 0;
+            int totalFailures = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epoch - bucketEpoch[i] < BUCKETS) {
+                    totalCalls += calls[i];
+                    totalFailures += failures[i];
+                }
+            }
+
+            if (totalCalls >= MIN_CALLS && totalFailures * 100L >= (long) totalCalls * failurePercent) {
+                trip(totalFailures + " of " + totalCalls + " Failed");
+            }
+        }
+    }
+
+    /**
+     * The probe ended before reaching the database, such as its deadline
+     * passing in the queue. It says nothing about the database, so let the
+     * next call probe instead.
+     */
+    void cancelProbe() {
+        if (state == State.HALF_OPEN) {
+            probing.set(false);
+        }
+    }
+
+    State getState() {
+        return state;
+    }
+
+    synchronized ApiObject getStats() {
+        ApiObject objRet = new ApiObject();
+
+        objRet.setString("state", state.name());
+        objRet.setLong("opened", opened);
+        objRet.setLong("rejected", rejected);
+
+        return objRet;
+    }
+
+    private void trip(String reason) {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        opened++;
+
+        log.error("Db {} Circuit Open for {} ms: {}", name, TimeUnit.NANOSECONDS.toMillis(openNanos), reason);
+    }
+
+    private void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketEpoch[i] = 0;
+            calls[i] = 0;
+            failures[i] = 0;
+        }
+
+        state = State.CLOSED;
+    }
+}
@@ -0,0 +1,632 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query result held by column in primitive arrays.
+ *
+ * <p>Numbers are kept in int[], long[] and double[] arrays, strings are
+ * dictionary encoded into an int[] of codes, and nulls are tracked in a
+ * bitmap per column. No object is created per row, so large numeric results
+ * take close to their raw size.</p>
+ *
+ * <p>Column types are chosen from the JDBC type:</p>
+ * <ul>
+ * <li>TINYINT, SMALLINT, INTEGER: IntColumn</li>
+ * <li>BIGINT: LongColumn</li>
+ * <li>REAL, FLOAT, DOUBLE: DoubleColumn</li>
+ * <li>DECIMAL, NUMERIC up to 18 digits: DecimalColumn, unscaled longs</li>
+ * <li>DECIMAL, NUMERIC over 18 digits: DoubleColumn</li>
+ * <li>BIT, BOOLEAN: BooleanColumn</li>
+ * <li>DATE, TIMESTAMP: TimestampColumn, UTC epoch microseconds, a DATE at
+ * midnight UTC of its day</li>
+ * <li>Everything else: StringColumn</li>
+ * </ul>
+ *
+ * @author kscarr73
+ */
+public final class ColumnarResult {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Column> columns;
+    private final int rowCount;
+
+    private ColumnarResult(Map<String, Column> columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * @return Column labels in SELECT order
+     */
+    public List<String> getColumnNames() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    /**
+     * @param name The column label, as returned by the driver
+     * @return The column, null if not in the result
+     */
+    public Column getColumn(String name) {
+        return columns.get(name);
+    }
+
+    public IntColumn getIntColumn(String name) {
+        return (IntColumn) columns.get(name);
+    }
+
+    public LongColumn getLongColumn(String name) {
+        return (LongColumn) columns.get(name);
+    }
+
+    public DoubleColumn getDoubleColumn(String name) {
+        return (DoubleColumn) columns.get(name);
+    }
+
+    public DecimalColumn getDecimalColumn(String name) {
+        return (DecimalColumn) columns.get(name);
+    }
+
+    public BooleanColumn getBooleanColumn(String name) {
+        return (BooleanColumn) columns.get(name);
+    }
+
+    public TimestampColumn getTimestampColumn(String name) {
+        return (TimestampColumn) columns.get(name);
+    }
+
+    public StringColumn getStringColumn(String name) {
+        return (StringColumn) columns.get(name);
+    }
+
+    /**
+     * Read every row of a ResultSet
+     *
+     * @param rs ResultSet before the first row
+     * @param capacity Expected rows, used to size the first buffers
+     * @return The result
+     * @throws SQLException
+     */
+    static ColumnarResult read(ResultSet rs, int capacity) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        int lclCapacity = capacity > 0 ? capacity : INITIAL_CAPACITY;
+
+        Column[] cols = new Column[columnCount];
+        Map<String, Column> byName = new LinkedHashMap<>();
+
+        for (int i = 0; i < columnCount; i++) {
+            cols[i] = newColumn(meta, i + 1, lclCapacity);
+            byName.put(cols[i].getName(), cols[i]);
+        }
+
+        int row = 0;
+
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                cols[i].read(rs, i + 1, row);
+            }
+
+            row++;
+        }
+
+        for (var col : cols) {
+            col.finish(row);
+        }
+
+        return new ColumnarResult(Collections.unmodifiableMap(byName), row);
+    }
+
+    private static Column newColumn(ResultSetMetaData meta, int idx, int capacity) throws SQLException {
+        String name = meta.getColumnLabel(idx);
+
+        return switch (meta.getColumnType(idx)) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER ->
+                new IntColumn(name, capacity);
+            case Types.BIGINT ->
+                new LongColumn(name, capacity);
+            case Types.REAL, Types.FLOAT, Types.DOUBLE ->
+                new DoubleColumn(name, capacity);
+            case Types.DECIMAL, Types.NUMERIC -> {
+                int precision = meta.getPrecision(idx);
+                int scale = meta.getScale(idx);
+
+                if (precision > 0 && precision <= 18 && scale >= 0) {
+                    yield new DecimalColumn(name, capacity, scale);
+                }
+
+                yield new DoubleColumn(name, capacity);
+            }
+            case Types.BIT, Types.BOOLEAN ->
+                new BooleanColumn(name, capacity);
+            case Types.DATE ->
+                new TimestampColumn(name, capacity, true);
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE ->
+                new TimestampColumn(name, capacity, false);
+            default ->
+                new StringColumn(name, capacity);
+        };
+    }
+
+    private static int grow(int length, int needed) {
+        return Math.max(needed + 1, length + (length >> 1));
+    }
+
+    /**
+     * One column of the result
+     */
+    public abstract static sealed class Column permits IntColumn, LongColumn, DoubleColumn, DecimalColumn, BooleanColumn, TimestampColumn, StringColumn {
+
+        private final String name;
+        private long[] nulls;
+        int size = 0;
+
+        Column(String name, int capacity) {
+            this.name = name;
+            this.nulls = new long[(capacity >> 6) + 1];
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of rows, the backing arrays may be longer
+         */
+        public int size() {
+            return size;
+        }
+
+        public boolean isNull(int row) {
+            checkRow(row);
+
+            return (nulls[row >> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * @return Bitmap of null rows, bit (row % 64) of word (row / 64)
+         */
+        public long[] getNullBitmap() {
+            return nulls;
+        }
+
+        /**
+         * Return the value of a row as an Object, null when the row is null
+         *
+         * @param row Row index starting at 0
+         * @return The boxed value
+         */
+        public abstract Object getObject(int row);
+
+        abstract void read(ResultSet rs, int idx, int row) throws SQLException;
+
+        final void setNull(int row) {
+            int word = row >> 6;
+
+            if (word >= nulls.length) {
+                nulls = Arrays.copyOf(nulls, grow(nulls.length, word));
+            }
+
+            nulls[word] |= 1L << row;
+        }
+
+        /**
+         * Set the row count once reading is done. The null bitmap only grows
+         * when a null is set, so it is sized here to cover every row.
+         */
+        final void finish(int rows) {
+            int words = (rows >> 6) + 1;
+
+            if (nulls.length < words) {
+                nulls = Arrays.copyOf(nulls, words);
+            }
+
+            size = rows;
+        }
+
+        final void checkRow(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+        }
+    }
+
+    public static final class IntColumn extends Column {
+
+        private int[] values;
+
+        IntColumn(String name, int capacity) {
+            super(name, capacity);
+            values = new int[capacity];
+        }
+
+        public int getInt(int row) {
+            checkRow(row);
+
+            return values[row];
+        }
+
+        /**
+         * @return The backing array, valid up to size(), null rows hold 0
+         */
+        public int[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+
+            values[row] = rs.getInt(idx);
+
+            if (rs.wasNull()) {
+                setNull(row);
+            }
+        }
+    }
+
+    public static final class LongColumn extends Column {
+
+        private long[] values;
+
+        LongColumn(String name, int capacity) {
+            super(name, capacity);
+            values = new long[capacity];
+        }
+
+        public long getLong(int row) {
+            checkRow(row);
+
+            return values[row];
+        }
+
+        /**
+         * @return The backing array, valid up to size(), null rows hold 0
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+
+            values[row] = rs.getLong(idx);
+
+            if (rs.wasNull()) {
+                setNull(row);
+            }
+        }
+    }
+
+    public static final class DoubleColumn extends Column {
+
+        private double[] values;
+
+        DoubleColumn(String name, int capacity) {
+            super(name, capacity);
+            values = new double[capacity];
+        }
+
+        public double getDouble(int row) {
+            checkRow(row);
+
+            return values[row];
+        }
+
+        /**
+         * @return The backing array, valid up to size(), null rows hold 0
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+
+            values[row] = rs.getDouble(idx);
+
+            if (rs.wasNull()) {
+                setNull(row);
+            }
+        }
+    }
+
+    /**
+     * Exact decimals stored as unscaled longs with one scale for the column
+     */
+    public static final class DecimalColumn extends Column {
+
+        private final int scale;
+        private long[] values;
+
+        DecimalColumn(String name, int capacity, int scale) {
+            super(name, capacity);
+            this.scale = scale;
+            values = new long[capacity];
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        public long getUnscaled(int row) {
+            checkRow(row);
+
+            return values[row];
+        }
+
+        public BigDecimal getDecimal(int row) {
+            return isNull(row) ? null : BigDecimal.valueOf(values[row], scale);
+        }
+
+        public double getDouble(int row) {
+            checkRow(row);
+
+            return values[row] / Math.pow(10, scale);
+        }
+
+        /**
+         * @return The backing array of unscaled values, valid up to size()
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return getDecimal(row);
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+
+            if (scale == 0) {
+                values[row] = rs.getLong(idx);
+
+                if (rs.wasNull()) {
+                    setNull(row);
+                }
+            } else {
+                BigDecimal val = rs.getBigDecimal(idx);
+
+                if (val == null) {
+                    setNull(row);
+                } else {
+                    values[row] = val.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+                }
+            }
+        }
+    }
+
+    public static final class BooleanColumn extends Column {
+
+        private long[] values;
+
+        BooleanColumn(String name, int capacity) {
+            super(name, capacity);
+            values = new long[(capacity >> 6) + 1];
+        }
+
+        public boolean getBoolean(int row) {
+            checkRow(row);
+
+            return (values[row >> 6] & (1L << row)) != 0;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return isNull(row) ? null : getBoolean(row);
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            int word = row >> 6;
+
+            if (word >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, word));
+            }
+
+            if (rs.getBoolean(idx)) {
+                values[word] |= 1L << row;
+            } else if (rs.wasNull()) {
+                setNull(row);
+            }
+        }
+    }
+
+    /**
+     * Dates and timestamps as UTC epoch microseconds
+     */
+    public static final class TimestampColumn extends Column {
+
+        private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+        private final boolean date;
+        private long[] values;
+
+        TimestampColumn(String name, int capacity, boolean date) {
+            super(name, capacity);
+            this.date = date;
+            values = new long[capacity];
+        }
+
+        public long getEpochMicros(int row) {
+            checkRow(row);
+
+            return values[row];
+        }
+
+        public OffsetDateTime getDateTime(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+
+            return Instant.ofEpochSecond(Math.floorDiv(values[row], 1_000_000L), Math.floorMod(values[row], 1_000_000L) * 1000L)
+                .atOffset(ZoneOffset.UTC);
+        }
+
+        /**
+         * @return The backing array, valid up to size()
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return getDateTime(row);
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+
+            if (date) {
+                // A DATE has no time zone, keep its day rather than the JVM's local midnight
+                Date val = rs.getDate(idx);
+
+                if (val == null) {
+                    setNull(row);
+                } else {
+                    values[row] = val.toLocalDate().toEpochDay() * MICROS_PER_DAY;
+                }
+            } else {
+                Timestamp val = rs.getTimestamp(idx);
+
+                if (val == null) {
+                    setNull(row);
+                } else {
+                    values[row] = Math.floorDiv(val.getTime(), 1000L) * 1_000_000L + val.getNanos() / 1000;
+                }
+            }
+        }
+    }
+
+    /**
+     * Strings stored once in a dictionary, with a code per row
+     */
+    public static final class StringColumn extends Column {
+
+        private int[] codes;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> lookup = new HashMap<>();
+
+        StringColumn(String name, int capacity) {
+            super(name, capacity);
+            codes = new int[capacity];
+        }
+
+        public String getString(int row) {
+            checkRow(row);
+
+            return codes[row] < 0 ? null : dictionary.get(codes[row]);
+        }
+
+        /**
+         * @param row Row index starting at 0
+         * @return Index into getDictionary(), -1 for null
+         */
+        public int getCode(int row) {
+            checkRow(row);
+
+            return codes[row];
+        }
+
+        /**
+         * @return The backing array of codes, valid up to size()
+         */
+        public int[] getCodes() {
+            return codes;
+        }
+
+        /**
+         * @return Each distinct value, in the order first read
+         */
+        public List<String> getDictionary() {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        @Override
+        public Object getObject(int row) {
+            return getString(row);
+        }
+
+        @Override
+        void read(ResultSet rs, int idx, int row) throws SQLException {
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            }
+
+            String val = rs.getString(idx);
+
+            if (val == null) {
+                codes[row] = -1;
+                setNull(row);
+            } else {
+                Integer code = lookup.get(val);
+
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.add(val);
+                    lookup.put(val, code);
+                }
+
+                codes[row] = code;
+            }
+        }
+    }
+}
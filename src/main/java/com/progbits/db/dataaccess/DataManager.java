@@ -1,14 +1,39 @@
 package com.progbits.db.dataaccess;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +50,7 @@ import com.progbits.db.SsDbObjects;
 import com.progbits.db.SsDbUtils;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
 
 /**
  * DataManager implementation using HikariCP and ApiObjects
@@ -44,17 +70,225 @@ public class DataManager implements ApiService {
     @Override
     public void configure() {
         pullConfigs();
-        
+
+        if (metrics == null) {
+            metrics = ServiceLoader.load(DataManagerMetrics.class).findFirst().orElse(null);
+        }
+
+        String cacheSize = config.getStringProperty(DB_SQLCACHESIZE);
+
+        templateCache = new SqlTemplateCache(cacheSize == null ? DEFAULT_SQLCACHESIZE : Integer.parseInt(cacheSize));
+
+        String repeatThreshold = config.getStringProperty(DB_NPLUSONE);
+
+        scopeThreshold = repeatThreshold == null ? DEFAULT_NPLUSONE : Integer.parseInt(repeatThreshold);
+
+        diagnostics = new QueryDiagnostics(this, asyncExecutor);
+
+        List<CompletableFuture<HikariDataSource>> pending = new ArrayList<>();
+
         for (var entry : dbConfigs.keySet()) {
-            ds.put(entry, setupPool(entry));
+            ApiObject dbData = dbConfigs.getObject(entry);
+
+            resultCaches.put(entry, new QueryResultCache(dbData.isSet(DB_CACHESIZE) ? Integer.parseInt(dbData.getString(DB_CACHESIZE)) : DEFAULT_CACHESIZE));
+
+            if ("true".equalsIgnoreCase(dbData.getString(DB_COALESCE_READS))) {
+                coalescers.put(entry, new ReadCoalescer());
+            }
+
+            if (dbData.isSet(DB_WRITEBEHIND)) {
+                Set<String> tables = new HashSet<>();
+
+                for (var table : dbData.getString(DB_WRITEBEHIND).split(",")) {
+                    tables.add(QueryResultCache.normalize(table.trim()));
+                }
+
+                writeBehindTables.put(entry, tables);
+            }
+
+            if (!"true".equalsIgnoreCase(dbData.getString(DB_LAZY))) {
+                if ("true".equalsIgnoreCase(dbData.getString(DB_WARMUP))) {
+                    // Before the pool is published, so getStatus never sees it cold
+                    warmedUp = false;
+                }
+
+                pending.add(startPoolAsync(entry));
+            }
         }
 
         loadSqlEntries();
+
+        if (!writeBehindTables.isEmpty() && shutdownHookAdded.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::closeWriteBehind, "writebehind-shutdown"));
+        }
+
+        // Pools connect in parallel, so startup waits only for the slowest
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+
+        startWarmUp();
+    }
+
+    /**
+     * Warm every started pool with DB_WARMUP set, getStatus reports false
+     * until all of them finish
+     */
+    private void startWarmUp() {
+        List<CompletableFuture<Void>> warming = new ArrayList<>();
+
+        for (var entry : ds.keySet()) {
+            ApiObject dbData = dbConfigs.getObject(entry);
+
+            if ("true".equalsIgnoreCase(dbData.getString(DB_WARMUP))) {
+                int runs = dbData.isSet(DB_WARMUPRUNS) ? Integer.parseInt(dbData.getString(DB_WARMUPRUNS)) : DEFAULT_WARMUPRUNS;
+                PoolWarmer warmer = new PoolWarmer(this, entry, ds.get(entry), warmupEntries(entry), runs);
+
+                warming.add(CompletableFuture.runAsync(() -> warmupReports.put(entry, warmer.warmUp()), asyncExecutor));
+            }
+        }
+
+        if (warming.isEmpty()) {
+            // Pools to warm failed to start
+            warmedUp = true;
+            return;
+        }
+
+        CompletableFuture.allOf(warming.toArray(CompletableFuture[]::new))
+            .whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Warm-up Failed: " + ex.getMessage(), ex);
+                }
+
+                warmedUp = true;
+            });
+    }
+
+    /**
+     * sql.yaml statements that run on a pool, entries name the pool with db
+     * and default to the default pool
+     */
+    private List<PoolWarmer.Entry> warmupEntries(String dbName) {
+        List<PoolWarmer.Entry> entries = new ArrayList<>();
+
+        if (sqlEntries == null) {
+            return entries;
+        }
+
+        for (var name : sqlEntries.keySet()) {
+            if (sqlEntries.get(name) instanceof ApiObject objEntry && objEntry.isSet("sql")) {
+                String entryDb = objEntry.isSet("db") ? objEntry.getString("db") : DEFAULT;
+
+                if (!dbName.equals(entryDb)) {
+                    continue;
+                }
+
+                ApiObject params = null;
+
+                if (objEntry.get("warmup") instanceof ApiObject objParams) {
+                    params = objParams;
+                } else if (Boolean.TRUE.equals(objEntry.get("warmup")) || "true".equals(objEntry.get("warmup"))) {
+                    params = new ApiObject();
+                }
+
+                entries.add(new PoolWarmer.Entry(name, objEntry.getString("sql"), params));
+            } else if (sqlEntries.get(name) instanceof String strSql && DEFAULT.equals(dbName)) {
+                entries.add(new PoolWarmer.Entry(name, strSql, null));
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Start a pool once, callers asking while it starts share the same start
+     */
+    private CompletableFuture<HikariDataSource> startPoolAsync(String name) {
+        return startups.computeIfAbsent(name, key -> CompletableFuture.supplyAsync(() -> startPool(key), asyncExecutor)
+            .exceptionally(ex -> {
+                log.error("Db " + key + " Start Failed: " + ex.getMessage(), ex);
+
+                return null;
+            }));
+    }
+
+    private HikariDataSource startPool(String name) {
+        ApiObject dbData = dbConfigs.getObject(name);
+        long start = System.nanoTime();
+
+        HikariDataSource pool = setupPool(name, dbData, name);
+
+        if (pool == null) {
+            log.warn("Db {} Start Failed after {} ms", name, (System.nanoTime() - start) / 1_000_000);
+
+            return null;
+        }
+
+        setupReplicas(name);
+
+        CircuitBreaker breaker = null;
+
+        if ("true".equalsIgnoreCase(dbData.getString(DB_BREAKER))) {
+            breaker = new CircuitBreaker(name,
+                dbData.isSet(DB_BREAKER_RATE) ? Integer.parseInt(dbData.getString(DB_BREAKER_RATE)) : DEFAULT_BREAKER_RATE,
+                dbData.isSet(DB_BREAKER_SLOW_MS) ? Long.parseLong(dbData.getString(DB_BREAKER_SLOW_MS)) * 1_000_000 : 0,
+                (dbData.isSet(DB_BREAKER_OPEN_MS) ? Long.parseLong(dbData.getString(DB_BREAKER_OPEN_MS)) : DEFAULT_BREAKER_OPEN_MS) * 1_000_000);
+        }
+
+        gates.put(name, new PoolGate(name, pool.getMaximumPoolSize(),
+            dbData.isSet(DB_MAXQUEUE) ? Integer.parseInt(dbData.getString(DB_MAXQUEUE)) : Integer.MAX_VALUE,
+            pool.getConnectionTimeout(), "true".equalsIgnoreCase(dbData.getString(DB_ADAPTIVE)), breaker));
+
+        readMetadata(name, pool);
+
+        if (dbData.isSet(DB_SLOWQUERY_MS)) {
+            diagnostics.configure(name, new QueryDiagnostics.Settings(
+                Long.parseLong(dbData.getString(DB_SLOWQUERY_MS)) * 1_000_000,
+                dbData.isSet(DB_SLOWQUERY_EXPLAIN) ? Double.parseDouble(dbData.getString(DB_SLOWQUERY_EXPLAIN)) : 0));
+        }
+
+        // Publish last, a pool in ds is ready to use
+        ds.put(name, pool);
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        startupTimes.put(name, millis);
+
+        log.info("Db {} Started in {} ms", name, millis);
+
+        return pool;
+    }
+
+    /**
+     * Return a started pool, starting it if DB_LAZY is set or an earlier start
+     * failed
+     */
+    private HikariDataSource getPool(String name) throws ApiException {
+        HikariDataSource pool = ds.get(name);
+
+        if (pool != null) {
+            return pool;
+        }
+
+        if (dbConfigs.getObject(name) == null) {
+            throw new ApiException(511, "Db Not Configured: " + name);
+        }
+
+        CompletableFuture<HikariDataSource> startup = startPoolAsync(name);
+
+        pool = startup.join();
+
+        if (pool == null) {
+            // Allow the next caller to try again
+            startups.remove(name, startup);
+
+            throw new ApiException(511, "Db Not Available: " + name);
+        }
+
+        return pool;
     }
 
     private void pullConfigs() {
         for (var propName : ConfigProvider.getInstance().getConfig().entrySet()) {
-            if (propName.getKey().startsWith(DB_HOST)) {
+            if (propName.getKey().startsWith(DB_HOST) && !propName.getKey().startsWith(DB_HOST_READ)) {
                 if (DB_HOST.equals(propName.getKey())) {
                     dbConfigs.setObject(DEFAULT, pullDbConfig(null));
                 } else {
@@ -64,6 +298,34 @@ public class DataManager implements ApiService {
                 }
             }
         }
+
+        for (var propName : ConfigProvider.getInstance().getConfig().entrySet()) {
+            if (propName.getKey().startsWith(DB_SHARDS + "_")) {
+                pullShardGroup(propName.getKey().substring(DB_SHARDS.length() + 1));
+            }
+        }
+    }
+
+    private void pullShardGroup(String group) {
+        List<String> pools = new ArrayList<>();
+
+        for (var pool : config.getStringProperty(DB_SHARDS + "_" + group).split(",")) {
+            String poolName = pool.trim();
+
+            if (!dbConfigs.isSet(poolName)) {
+                log.error("Shard Group {} Skipped, Pool Not Configured: {}", group, poolName);
+                return;
+            }
+
+            pools.add(poolName);
+        }
+
+        if (dbConfigs.isSet(group)) {
+            log.error("Shard Group {} Skipped, A Pool Has The Same Name", group);
+            return;
+        }
+
+        shardGroups.put(group, new ShardRing(group, pools, config.getStringProperty(DB_SHARDKEY + "_" + group)));
     }
 
     private ApiObject pullDbConfig(String name) {
@@ -84,6 +346,31 @@ public class DataManager implements ApiService {
         objRet.setString(DB_PASSWORD, config.getStringProperty(DB_PASSWORD + lclName));
         objRet.setString(DB_TESTQUERY, config.getStringProperty(DB_TESTQUERY + lclName));
         objRet.setString(DB_MAXCONNECTIONS, config.getStringProperty(DB_MAXCONNECTIONS + lclName));
+        objRet.setString(DB_FETCHSIZE, config.getStringProperty(DB_FETCHSIZE + lclName));
+        objRet.setString(DB_BATCHSIZE, config.getStringProperty(DB_BATCHSIZE + lclName));
+        objRet.setString(DB_STMTCACHESIZE, config.getStringProperty(DB_STMTCACHESIZE + lclName));
+        objRet.setString(DB_CACHESIZE, config.getStringProperty(DB_CACHESIZE + lclName));
+        objRet.setString(DB_CACHETTL, config.getStringProperty(DB_CACHETTL + lclName));
+        objRet.setString(DB_MAXQUEUE, config.getStringProperty(DB_MAXQUEUE + lclName));
+        objRet.setString(DB_HOST_READ, config.getStringProperty(DB_HOST_READ + lclName));
+        objRet.setString(DB_READ_STRATEGY, config.getStringProperty(DB_READ_STRATEGY + lclName));
+        objRet.setString(DB_READ_TIMEOUT, config.getStringProperty(DB_READ_TIMEOUT + lclName));
+        objRet.setString(DB_LAZY, config.getStringProperty(DB_LAZY + lclName));
+        objRet.setString(DB_INITTIMEOUT, config.getStringProperty(DB_INITTIMEOUT + lclName));
+        objRet.setString(DB_WARMUP, config.getStringProperty(DB_WARMUP + lclName));
+        objRet.setString(DB_WARMUPRUNS, config.getStringProperty(DB_WARMUPRUNS + lclName));
+        objRet.setString(DB_SLOWQUERY_MS, config.getStringProperty(DB_SLOWQUERY_MS + lclName));
+        objRet.setString(DB_SLOWQUERY_EXPLAIN, config.getStringProperty(DB_SLOWQUERY_EXPLAIN + lclName));
+        objRet.setString(DB_COALESCE_READS, config.getStringProperty(DB_COALESCE_READS + lclName));
+        objRet.setString(DB_WRITEBEHIND, config.getStringProperty(DB_WRITEBEHIND + lclName));
+        objRet.setString(DB_WRITEBEHIND_MS, config.getStringProperty(DB_WRITEBEHIND_MS + lclName));
+        objRet.setString(DB_WRITEBEHIND_SIZE, config.getStringProperty(DB_WRITEBEHIND_SIZE + lclName));
+        objRet.setString(DB_ADAPTIVE, config.getStringProperty(DB_ADAPTIVE + lclName));
+        objRet.setString(DB_BREAKER, config.getStringProperty(DB_BREAKER + lclName));
+        objRet.setString(DB_BREAKER_RATE, config.getStringProperty(DB_BREAKER_RATE + lclName));
+        objRet.setString(DB_BREAKER_SLOW_MS, config.getStringProperty(DB_BREAKER_SLOW_MS + lclName));
+        objRet.setString(DB_BREAKER_OPEN_MS, config.getStringProperty(DB_BREAKER_OPEN_MS + lclName));
+        objRet.setString(DB_TIMEOUT_MS, config.getStringProperty(DB_TIMEOUT_MS + lclName));
 
         return objRet;
     }
@@ -93,6 +380,19 @@ public class DataManager implements ApiService {
             YamlObjectParser parser = new YamlObjectParser(true);
 
             sqlEntries = parser.parseSingle(new InputStreamReader(is));
+
+            for (var name : sqlEntries.keySet()) {
+                if (sqlEntries.get(name) instanceof ApiObject objEntry && objEntry.isSet("sql")) {
+                    sqlEntryOptions.put(objEntry.getString("sql"), objEntry);
+                    sqlEntryNames.put(objEntry.getString("sql"), name);
+
+                    if (objEntry.isSet("timeout")) {
+                        sqlEntryTimeouts.put(objEntry.getString("sql"), Long.parseLong(objEntry.getString("timeout")));
+                    }
+                } else if (sqlEntries.get(name) instanceof String strSql) {
+                    sqlEntryNames.put(strSql, name);
+                }
+            }
         } catch (ApiException | ApiClassNotFoundException appx) {
             log.info("DB SQL Entries Read Failed");
         } catch (IOException iex) {
@@ -109,21 +409,148 @@ public class DataManager implements ApiService {
     private static final String DB_PASSWORD = "DB_PASSWORD";
     private static final String DB_TESTQUERY = "DB_TESTQUERY";
     private static final String DB_MAXCONNECTIONS = "DB_MAXCONNECTIONS";
+    private static final String DB_FETCHSIZE = "DB_FETCHSIZE";
+    private static final String DB_BATCHSIZE = "DB_BATCHSIZE";
+    private static final String DB_STMTCACHESIZE = "DB_STMTCACHESIZE";
+    private static final String DB_SQLCACHESIZE = "DB_SQLCACHESIZE";
+    private static final String DB_CACHESIZE = "DB_CACHESIZE";
+    private static final String DB_CACHETTL = "DB_CACHETTL";
+    private static final String DB_MAXQUEUE = "DB_MAXQUEUE";
+    private static final String DB_HOST_READ = "DB_HOST_READ";
+    private static final String DB_READ_STRATEGY = "DB_READ_STRATEGY";
+    private static final String DB_READ_TIMEOUT = "DB_READ_TIMEOUT";
+    private static final String DB_LAZY = "DB_LAZY";
+    private static final String DB_INITTIMEOUT = "DB_INITTIMEOUT";
+    private static final String DB_WARMUP = "DB_WARMUP";
+    private static final String DB_WARMUPRUNS = "DB_WARMUPRUNS";
+    private static final String DB_SLOWQUERY_MS = "DB_SLOWQUERY_MS";
+    private static final String DB_SLOWQUERY_EXPLAIN = "DB_SLOWQUERY_EXPLAIN";
+    private static final String DB_NPLUSONE = "DB_NPLUSONE";
+    private static final String DB_COALESCE_READS = "DB_COALESCE_READS";
+    private static final String DB_WRITEBEHIND = "DB_WRITEBEHIND";
+    private static final String DB_WRITEBEHIND_MS = "DB_WRITEBEHIND_MS";
+    private static final String DB_WRITEBEHIND_SIZE = "DB_WRITEBEHIND_SIZE";
+    private static final String DB_ADAPTIVE = "DB_ADAPTIVE";
+    private static final String DB_BREAKER = "DB_BREAKER";
+    private static final String DB_BREAKER_RATE = "DB_BREAKER_RATE";
+    private static final String DB_BREAKER_SLOW_MS = "DB_BREAKER_SLOW_MS";
+    private static final String DB_BREAKER_OPEN_MS = "DB_BREAKER_OPEN_MS";
+    private static final String DB_SHARDS = "DB_SHARDS";
+    private static final String DB_SHARDKEY = "DB_SHARDKEY";
+    private static final String DB_TIMEOUT_MS = "DB_TIMEOUT_MS";
+
+    // searchObj fields SsDbObjects reads as paging and sorting, not as filters
+    private static final Set<String> FIND_ORDER_LIMIT = Set.of("orderBy", "start", "length");
+    private static final Set<String> FIND_CONTROLS = Set.of("tableName", "orderBy", "start", "length");
+
+    private static final int DEFAULT_FETCHSIZE = 1000;
+    private static final int DEFAULT_BATCHSIZE = 500;
+    private static final int DEFAULT_STMTCACHESIZE = 250;
+    private static final int DEFAULT_SQLCACHESIZE = 500;
+    private static final int DEFAULT_CACHESIZE = 1000;
+    private static final long DEFAULT_READ_TIMEOUT = 1000;
+    private static final int DEFAULT_WARMUPRUNS = 1;
+    private static final int DEFAULT_NPLUSONE = 10;
+    private static final long DEFAULT_WRITEBEHIND_MS = 1000;
+    private static final int DEFAULT_WRITEBEHIND_SIZE = 10000;
+    private static final int DEFAULT_BREAKER_RATE = 50;
+    private static final long DEFAULT_BREAKER_OPEN_MS = 5000;
 
     private static ConfigProvider config = ConfigProvider.getInstance();
     private static ApiResources apiResources = ApiResources.getInstance();
     
-    private Map<String, HikariDataSource> ds = new HashMap<>();
+    private final Map<String, HikariDataSource> ds = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<HikariDataSource>> startups = new ConcurrentHashMap<>();
+    private final Map<String, Long> startupTimes = new ConcurrentHashMap<>();
+    private final Map<String, ApiObject> warmupReports = new ConcurrentHashMap<>();
+    private final Map<String, DbDialect> dialects = new ConcurrentHashMap<>();
+    private final Map<String, PoolGate> gates = new ConcurrentHashMap<>();
+    private final Map<String, ReplicaSet> replicas = new ConcurrentHashMap<>();
+    private final Map<String, PoolMetadata> metadata = new ConcurrentHashMap<>();
+    private final Map<String, ShardRing> shardGroups = new ConcurrentHashMap<>();
+
+    private static final ExecutorService asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final StatementWatchdog watchdog = new StatementWatchdog();
 
     private ApiObject sqlEntries = null;
+    private Map<String, ApiObject> sqlEntryOptions = new HashMap<>();
+    private Map<String, String> sqlEntryNames = new HashMap<>();
+    private Map<String, Long> sqlEntryTimeouts = new HashMap<>();
+    private final Map<String, QueryResultCache> resultCaches = new ConcurrentHashMap<>();
+    private final Map<String, ReadCoalescer> coalescers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> writeBehindTables = new ConcurrentHashMap<>();
+    private final Map<String, WriteBehindBuffer> writeBehind = new ConcurrentHashMap<>();
+    private final AtomicBoolean shutdownHookAdded = new AtomicBoolean();
+
+    private SqlTemplateCache templateCache = new SqlTemplateCache(DEFAULT_SQLCACHESIZE);
 
     private ApiObject dbConfigs = new ApiObject();
 
-    private HikariDataSource setupPool(String name) {
+    private volatile boolean warmedUp = true;
+
+    private volatile DataManagerMetrics metrics = null;
+
+    private QueryDiagnostics diagnostics = null;
+
+    private int scopeThreshold = DEFAULT_NPLUSONE;
+
+    private PoolMetadata readMetadata(String name, HikariDataSource pool) {
+        if (pool == null) {
+            return null;
+        }
+
+        try (Connection conn = pool.getConnection()) {
+            PoolMetadata poolMeta = PoolMetadata.read(conn);
+
+            metadata.put(name, poolMeta);
+            dialects.put(name, poolMeta.getDialect());
+
+            log.info("Db {}: {} {} Dialect: {}", name, poolMeta.getProductName(), poolMeta.getProductVersion(), poolMeta.getDialect());
+
+            return poolMeta;
+        } catch (SQLException sqx) {
+            log.warn("Db {} Metadata Read Failed: {}", name, sqx.getMessage());
+        }
+
+        return null;
+    }
+
+    private void setupReplicas(String name) {
         ApiObject dbData = dbConfigs.getObject(name);
 
+        if (!dbData.isSet(DB_HOST_READ)) {
+            return;
+        }
+
+        List<HikariDataSource> replicaPools = new ArrayList<>();
+
+        int idx = 1;
+
+        for (var host : dbData.getString(DB_HOST_READ).split(",")) {
+            ApiObject replicaData = DbRows.copy(dbData);
+
+            replicaData.setString(DB_HOST, host.trim());
+
+            HikariDataSource replicaPool = setupPool(name, replicaData, name + "-read-" + idx++);
+
+            if (replicaPool != null) {
+                replicaPools.add(replicaPool);
+            }
+        }
+
+        ReplicaSet.Strategy strategy = dbData.isSet(DB_READ_STRATEGY)
+            ? ReplicaSet.Strategy.valueOf(dbData.getString(DB_READ_STRATEGY).toUpperCase())
+            : ReplicaSet.Strategy.LEASTBUSY;
+
+        replicas.put(name, new ReplicaSet(name, strategy, replicaPools));
+    }
+
+    private HikariDataSource setupPool(String name, ApiObject dbData, String poolName) {
         HikariConfig dbconfig = new HikariConfig();
 
+        dbconfig.setPoolName(poolName);
+
         if (!dbData.getString(DB_HOST).startsWith("jdbc:") || (dbData.getString(DB_DRIVER) != null && !dbData.getString(DB_DRIVER).isEmpty())) {
             dbconfig.setDriverClassName(dbData.getString(DB_DRIVER));
         }
@@ -166,6 +593,45 @@ public class DataManager implements ApiService {
                 dbconfig.setMaximumPoolSize(Integer.parseInt(dbData.getString(DB_MAXCONNECTIONS)));
             }
 
+            if (dbData.isSet(DB_INITTIMEOUT)) {
+                dbconfig.setInitializationFailTimeout(Long.parseLong(dbData.getString(DB_INITTIMEOUT)));
+            }
+
+            DbDialect dialect = DbDialect.fromUrl(dbconfig.getJdbcUrl());
+
+            int stmtCacheSize = dbData.isSet(DB_STMTCACHESIZE) ? Integer.parseInt(dbData.getString(DB_STMTCACHESIZE)) : DEFAULT_STMTCACHESIZE;
+
+            if (dialect == DbDialect.POSTGRESQL) {
+                // Send JDBC batches as multi-row inserts
+                dbconfig.addDataSourceProperty("reWriteBatchedInserts", true);
+                dbconfig.addDataSourceProperty("preparedStatementCacheQueries", stmtCacheSize);
+            } else if (dialect == DbDialect.MYSQL) {
+                dbconfig.addDataSourceProperty("rewriteBatchedStatements", true);
+                dbconfig.addDataSourceProperty("cachePrepStmts", true);
+                dbconfig.addDataSourceProperty("useServerPrepStmts", true);
+                dbconfig.addDataSourceProperty("prepStmtCacheSize", stmtCacheSize);
+                dbconfig.addDataSourceProperty("prepStmtCacheSqlLimit", 2048);
+            } else if (dialect == DbDialect.MARIADB) {
+                dbconfig.addDataSourceProperty("cachePrepStmts", true);
+                dbconfig.addDataSourceProperty("useServerPrepStmts", true);
+                dbconfig.addDataSourceProperty("prepStmtCacheSize", stmtCacheSize);
+                // bulkLoad sends LOAD DATA LOCAL INFILE from a stream, the driver checks the file name requested
+                dbconfig.addDataSourceProperty("allowLocalInfile", true);
+            } else if (dialect == DbDialect.SQLSERVER && !dbconfig.getJdbcUrl().contains("jtds")) {
+                dbconfig.addDataSourceProperty("disableStatementPooling", false);
+                dbconfig.addDataSourceProperty("statementPoolingCacheSize", stmtCacheSize);
+            }
+
+            if (!name.equals(poolName)) {
+                // Read replica, fail over to the primary quickly
+                dbconfig.setReadOnly(true);
+                dbconfig.setConnectionTimeout(dbData.isSet(DB_READ_TIMEOUT) ? Long.parseLong(dbData.getString(DB_READ_TIMEOUT)) : DEFAULT_READ_TIMEOUT);
+            }
+
+            dbconfig.setMetricsTrackerFactory(new HikariMetricsBridge(() -> metrics));
+
+            dialects.put(name, dialect);
+
             return new HikariDataSource(dbconfig);
         } catch (Exception ex) {
             log.error("Database Connection Failed: " + ex.getMessage(), ex);
@@ -176,18 +642,26 @@ public class DataManager implements ApiService {
 
     /**
      * Returns the status of DataManager, true if successfully configured and
-     * connected
+     * connected, false while DB_WARMUP is running
      *
      * @return true/false did DataManager start connections properly
      */
     public boolean getStatus() {
+        if (!warmedUp) {
+            return false;
+        }
+
         boolean bRet = false;
 
-        for (var entry : ds.entrySet()) {
-            if (entry.getValue() != null) {
-                bRet = entry.getValue().isRunning();
+        for (var entry : dbConfigs.keySet()) {
+            HikariDataSource pool = ds.get(entry);
+
+            if (pool != null) {
+                bRet = pool.isRunning();
             } else {
-                bRet = false;
+                // A lazy pool that has not been used yet is not a failure
+                bRet = "true".equalsIgnoreCase(dbConfigs.getObject(entry).getString(DB_LAZY))
+                    && !startups.containsKey(entry);
             }
 
             if (!bRet) {
@@ -198,239 +672,1953 @@ public class DataManager implements ApiService {
         return bRet;
     }
 
+    /**
+     * Milliseconds each pool took to start, including replicas and metadata
+     *
+     * @return ApiObject with one field per started pool
+     */
+    public ApiObject getPoolStartupTimes() {
+        ApiObject objRet = new ApiObject();
+
+        for (var entry : startupTimes.entrySet()) {
+            objRet.setLong(entry.getKey(), entry.getValue());
+        }
+
+        return objRet;
+    }
+
+    /**
+     * Results of the DB_WARMUP phase for each warmed pool
+     *
+     * @return ApiObject with connections, statements, queries, millis and
+     * failed {name, message} per pool
+     */
+    public ApiObject getWarmupReport() {
+        ApiObject objRet = new ApiObject();
+
+        for (var entry : warmupReports.entrySet()) {
+            objRet.setObject(entry.getKey(), entry.getValue());
+        }
+
+        return objRet;
+    }
+
+    /**
+     * Counters for the compiled :{field} SQL cache
+     *
+     * @return ApiObject with size, maxSize, hits and misses
+     */
+    public ApiObject getSqlTemplateStats() {
+        return templateCache.getStats();
+    }
+
     /**
      * Return an entry from /resources/db/sql.yaml
      *
+     * <p>Entries are either the SQL string, or an object with a sql field and
+     * options such as cacheTtl.</p>
+     *
      * @param name
      * @return
      */
     public String getSqlEntry(String name) {
         if (sqlEntries != null) {
+            if (sqlEntries.get(name) instanceof ApiObject objEntry) {
+                return objEntry.getString("sql");
+            }
+
             return sqlEntries.getString(name);
         } else {
             return null;
         }
     }
 
-    public ApiObject getConfig() {
-        return dbConfigs;
-    }
+    /**
+     * Counters for the query result cache of a pool
+     *
+     * @param dbName The configured Db name
+     * @return ApiObject with size, maxSize, hits and misses, null if the pool
+     * is not known
+     */
+    public ApiObject getResultCacheStats(String dbName) {
+        QueryResultCache cache = resultCaches.get(dbName);
 
-    public void setConfig(ApiObject objConfig) {
-        dbConfigs = objConfig;
+        return cache == null ? null : cache.getStats();
     }
 
-    public HikariDataSource getDataSource() {
-        return getDataSource(DEFAULT);
-    }
+    /**
+     * Remove every cached result for a pool
+     *
+     * @param dbName The configured Db name
+     */
+    public void clearResultCache(String dbName) {
+        QueryResultCache cache = resultCaches.get(dbName);
 
-    public HikariDataSource getDataSource(String name) {
-        return ds.get(name);
-    }
+        if (cache != null) {
+            cache.clear();
+        }
 
-    public Connection getConnection() throws ApiException {
-        return getConnection(DEFAULT);
+        invalidateReads(dbName);
     }
 
-    public Connection getConnection(String name) throws ApiException {
-        try {
-            if (ds == null) {
-                configure();
-            }
+    /**
+     * Remove cached results read from a table, for writes made outside of
+     * DataManager
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table that changed
+     */
+    public void invalidateTable(String dbName, String tableName) {
+        QueryResultCache cache = resultCaches.get(dbName);
 
-            return ds.get(name).getConnection();
-        } catch (SQLException sqx) {
-            throw new ApiException(511, sqx.getMessage());
+        if (cache != null) {
+            cache.invalidate(QueryResultCache.normalize(tableName));
         }
+
+        invalidateReads(dbName);
     }
 
-    public ApiObject getTable(String tableName, ApiObject searchObj) throws ApiException {
-        return getTable(DEFAULT, tableName, searchObj);
+    /**
+     * Counters for shared reads of a pool with DB_COALESCE_READS
+     *
+     * @param dbName The configured Db name
+     * @return ApiObject with executions, shared and inFlight, null if reads
+     * are not shared for the pool
+     */
+    public ApiObject getCoalesceStats(String dbName) {
+        ReadCoalescer coalescer = coalescers.get(dbName);
+
+        return coalescer == null ? null : coalescer.getStats();
     }
 
-    public ApiObject getTable(String dbName, String tableName, ApiObject searchObj) throws ApiException {
-        try (Connection conn = ds.get(dbName).getConnection()) {
-            searchObj.setString("tableName", tableName);
+    private void invalidateReads(String dbName) {
+        ReadCoalescer coalescer = coalescers.get(dbName);
 
-            return SsDbObjects.find(conn, searchObj);
-        } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
-        } catch (Exception ex) {
-            throw new ApiException(400, ex.getMessage(), ex);
+        if (coalescer != null) {
+            coalescer.invalidate();
         }
     }
 
-    public ApiObject saveIntegerKey(String dbName, String tableName, String id, ApiObject objSave) throws ApiException {
-        try (Connection conn = ds.get(dbName).getConnection()) {
-            return SsDbObjects.upsertWithIntegerKey(conn, tableName, id, objSave);
-        } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
-        } catch (Exception ex) {
-            if (ex.getMessage() != null) {
-                if (ex.getMessage().contains("duplicate key")) {
-                    throw new ApiException(400, "Duplicate Record", ex);
-                } else {
-                    throw new ApiException(400, ex.getMessage(), ex);
-                }
-            }
-            throw new ApiException(400, ex.getMessage(), ex);
-        }
+    private interface CachedQuery {
+
+        ApiObject run() throws ApiException;
     }
 
     /**
-     * Save an ApiObject into Database with an ID field.
-     * 
-     * <p>Does not expect the Field to be Generated by the Database.</p>
-     * 
-     * @param dbName
-     * @param tableName
-     * @param id
-     * @param objSave
-     * @return
-     * @throws ApiException 
+     * Cache TTL for a read, from the sql.yaml entry cacheTtl or DB_CACHETTL
      */
-    public ApiObject saveStringId(String dbName, String tableName, String id, ApiObject objSave) throws ApiException {
-        try (Connection conn = ds.get(dbName).getConnection()) {
-            return SsDbObjects.upsertWithId(conn, tableName, id, objSave);
-        } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
-        } 
-    }
-    
-    public ApiObject saveStringKey(String dbName, String tableName, String id, ApiObject objSave) throws ApiException {
-        try (Connection conn = ds.get(dbName).getConnection()) {
-            return SsDbObjects.upsertWithStringKey(conn, tableName, id, objSave);
+    private long getCacheTtl(String dbName, String sql) {
+        ApiObject objEntry = sql == null ? null : sqlEntryOptions.get(sql);
+
+        if (objEntry != null && objEntry.isSet("cacheTtl")) {
+            return Long.parseLong(objEntry.getString("cacheTtl")) * 1000;
+        }
+
+        ApiObject dbData = dbConfigs.getObject(dbName);
+
+        if (dbData != null && dbData.isSet(DB_CACHETTL)) {
+            return Long.parseLong(dbData.getString(DB_CACHETTL)) * 1000;
+        }
+
+        return 0;
+    }
+
+    private ApiObject readThrough(String dbName, String sqlOrTable, Set<String> tables, Object params, long ttl, CachedQuery query) throws ApiException {
+        QueryResultCache cache = resultCaches.get(dbName);
+        ReadCoalescer coalescer = coalescers.get(dbName);
+        boolean cached = ttl > 0 && cache != null;
+
+        if (!cached && coalescer == null) {
+            return query.run();
+        }
+
+        String key = QueryResultCache.key(sqlOrTable, params);
+
+        if (!cached) {
+            return coalescer.run(key, query::run);
+        }
+
+        ApiObject objRet = cache.get(key);
+
+        if (objRet == null) {
+            long generation = cache.getGeneration();
+
+            objRet = coalescer == null ? query.run() : coalescer.run(key, query::run);
+
+            cache.put(key, generation, objRet, ttl, tables);
+        }
+
+        return objRet;
+    }
+
+    private void invalidateSql(String dbName, String sql) {
+        QueryResultCache cache = resultCaches.get(dbName);
+
+        if (cache != null) {
+            Set<String> tables = QueryResultCache.tablesOf(sql);
+
+            if (tables.isEmpty()) {
+                cache.clear();
+            } else {
+                for (var table : tables) {
+                    cache.invalidate(table);
+                }
+            }
+        }
+
+        invalidateReads(dbName);
+    }
+
+    /**
+     * Set where operation and pool timings are sent. Replaces an
+     * implementation found through ServiceLoader.
+     *
+     * @param metrics The metrics to use, null to turn off
+     */
+    public void setMetrics(DataManagerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public DataManagerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Start timing a table operation, held to DB_TIMEOUT_MS
+     */
+    OperationTimer startTimer(String dbName, String operation, String target) {
+        return new OperationTimer(metrics, diagnostics, dbName, operation, target,
+            TimeUnit.MILLISECONDS.toNanos(getTimeoutMillis(dbName)));
+    }
+
+    /**
+     * Start timing an operation running the SQL, tagged with its sql.yaml
+     * entry name and held to the entry timeout when the SQL came from
+     * sql.yaml, otherwise to DB_TIMEOUT_MS
+     */
+    OperationTimer startSqlTimer(String dbName, String operation, String sql) {
+        Long entryTimeout = sqlEntryTimeouts.get(sql);
+
+        return new OperationTimer(metrics, diagnostics, dbName, operation, targetOf(sql),
+            TimeUnit.MILLISECONDS.toNanos(entryTimeout != null ? entryTimeout : getTimeoutMillis(dbName)));
+    }
+
+    /**
+     * Time an operation may take from DB_TIMEOUT_MS, 0 for no limit
+     */
+    private long getTimeoutMillis(String dbName) {
+        ApiObject dbData = dbConfigs.getObject(dbName);
+
+        if (dbData != null && dbData.isSet(DB_TIMEOUT_MS)) {
+            return Long.parseLong(dbData.getString(DB_TIMEOUT_MS));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Bound the DataManager calls this thread makes until the deadline is
+     * closed, waiting for a connection included. Calls still running when it
+     * passes are cancelled and fail with {@link Deadline#DEADLINE_EXCEEDED}.
+     *
+     * @param millis Time the calls may take
+     * @return The deadline, which MUST be closed
+     * @see Deadline
+     */
+    public Deadline openDeadline(long millis) {
+        return new Deadline(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Count the statements this thread runs until the scope is closed, and
+     * warn when one runs more than DB_NPLUSONE times
+     *
+     * @param name Name for the scope in logs, such as the request path
+     * @return The scope, which MUST be closed
+     * @see QueryScope
+     */
+    public QueryScope openQueryScope(String name) {
+        return openQueryScope(name, scopeThreshold);
+    }
+
+    /**
+     * Count the statements this thread runs until the scope is closed
+     *
+     * @param name Name for the scope in logs, such as the request path
+     * @param threshold Warn when one statement runs more than this many times
+     * @return The scope, which MUST be closed
+     */
+    public QueryScope openQueryScope(String name, int threshold) {
+        return new QueryScope(name, threshold);
+    }
+
+    /**
+     * Name used to tag timings for SQL, the sql.yaml entry name when the SQL
+     * came from sql.yaml
+     */
+    String targetOf(String sql) {
+        return sqlEntryNames.getOrDefault(sql, "sql");
+    }
+
+    public ApiObject getConfig() {
+        return dbConfigs;
+    }
+
+    public void setConfig(ApiObject objConfig) {
+        dbConfigs = objConfig;
+    }
+
+    public HikariDataSource getDataSource() {
+        return getDataSource(DEFAULT);
+    }
+
+    public HikariDataSource getDataSource(String name) {
+        try {
+            return getPool(name);
+        } catch (ApiException apx) {
+            return null;
+        }
+    }
+
+    public Connection getConnection() throws ApiException {
+        return getConnection(DEFAULT);
+    }
+
+    public Connection getConnection(String name) throws ApiException {
+        try {
+            HikariDataSource pool = getPool(name);
+            PoolGate gate = gates.get(name);
+            Deadline deadline = Deadline.current();
+
+            if (deadline != null && deadline.isExpired()) {
+                throw new ApiException(Deadline.DEADLINE_EXCEEDED, "Deadline Exceeded: " + name);
+            }
+
+            boolean probe = gate.acquire(deadline == null ? Long.MAX_VALUE : deadline.remainingNanos());
+            long start = System.nanoTime();
+
+            try {
+                Connection conn = deadline == null ? pool.getConnection() : borrow(pool, deadline);
+
+                return withDeadline(GatedConnection.wrap(conn, gate, start, probe), deadline);
+            } catch (SQLException sqx) {
+                if (deadline != null && deadline.isExpired()) {
+                    // The caller ran out of time, that says nothing about the pool
+                    gate.cancel(probe);
+
+                    throw new ApiException(Deadline.DEADLINE_EXCEEDED, "Deadline Exceeded Waiting For Connection: " + name);
+                }
+
+                gate.release(System.nanoTime() - start, true, probe);
+                throw sqx;
+            }
+        } catch (SQLException sqx) {
+            throw new ApiException(511, sqx.getMessage());
+        }
+    }
+
+    /**
+     * Take a connection from the pool, waiting no longer than the deadline
+     * has left
+     */
+    private static Connection borrow(HikariDataSource pool, Deadline deadline) throws SQLException {
+        long waitMillis = Math.min(pool.getConnectionTimeout(), TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos()));
+
+        if (pool.getHikariPoolMXBean() instanceof HikariPool hikariPool) {
+            return hikariPool.getConnection(Math.max(waitMillis, 1));
+        }
+
+        return pool.getConnection();
+    }
+
+    /**
+     * Return a connection for read only work, from a read replica if one is
+     * configured and available, otherwise from the primary.
+     *
+     * @param name The configured Db name
+     * @return Connection that MUST be closed
+     * @throws ApiException
+     */
+    public Connection getReadConnection(String name) throws ApiException {
+        getPool(name);
+
+        ReplicaSet replicaSet = replicas.get(name);
+
+        if (replicaSet != null && !replicaSet.isEmpty()) {
+            Connection conn = replicaSet.getConnection();
+
+            if (conn != null) {
+                return withDeadline(conn, Deadline.current());
+            }
+        }
+
+        return getConnection(name);
+    }
+
+    private Connection withDeadline(Connection conn, Deadline deadline) {
+        return deadline == null ? conn : DeadlineConnection.wrap(conn, deadline, watchdog, asyncExecutor);
+    }
+
+    public ApiObject getTable(String tableName, ApiObject searchObj) throws ApiException {
+        return getTable(DEFAULT, tableName, searchObj);
+    }
+
+    public ApiObject getTable(String dbName, String tableName, ApiObject searchObj) throws ApiException {
+        if (shardGroups.containsKey(dbName)) {
+            return getTable(shardGroups.get(dbName).poolFor(searchObj), tableName, searchObj);
+        }
+
+        searchObj.setString("tableName", tableName);
+
+        return readThrough(dbName, tableName, Set.of(QueryResultCache.normalize(tableName)), searchObj,
+            getCacheTtl(dbName, null), () -> findTable(dbName, searchObj));
+    }
+
+    private ApiObject findTable(String dbName, ApiObject searchObj) throws ApiException {
+        try (OperationTimer timer = startTimer(dbName, "getTable", searchObj.getString("tableName")).describe(null, searchObj, null);
+            Connection conn = timer.acquired(getReadConnection(dbName))) {
+            return timer.done(SsDbObjects.find(conn, searchObj));
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Read one page of a table, ordered by sortKeys.
+     *
+     * <p>Pages seek past the keys of the previous page instead of skipping
+     * rows with an offset, so deep pages cost the same as the first. The sort
+     * keys must not be null, and together must be unique, for example
+     * <code>List.of("created DESC", "id DESC")</code>.</p>
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to read
+     * @param searchObj Fields that must equal the value, a List value matches
+     * any of the values. May be null.
+     * @param sortKeys Column names, each optionally followed by ASC or DESC
+     * @param pageSize Max rows to return
+     * @param pageToken The next field from the previous page, null for the
+     * first page
+     * @return ApiObject with a root list of rows, and next set when there is
+     * another page
+     * @throws ApiException 400 if pageToken was made for other sort keys
+     */
+    public ApiObject getTablePage(String dbName, String tableName, ApiObject searchObj, List<String> sortKeys, int pageSize, String pageToken) throws ApiException {
+        KeysetPage page = new KeysetPage(tableName, sortKeys, pageSize);
+        List<Object> args = new ArrayList<>();
+
+        // Start a lazy pool first, the dialect is known once it is up
+        getPool(dbName);
+
+        String sql = page.buildSql(getDialect(dbName), searchObj, page.decode(pageToken), args);
+
+        Object[] bindArgs = args.toArray();
+
+        try (OperationTimer timer = startTimer(dbName, "getTablePage", tableName)
+            .describe(sql, bindArgs, ps -> SqlTemplate.bind(ps, bindArgs));
+            Connection conn = timer.acquired(getReadConnection(dbName));
+            PreparedStatement ps = conn.prepareStatement(sql)) {
+            SqlTemplate.bind(ps, bindArgs);
+
+            return timer.done(page.read(ps, timer));
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public ApiObject saveIntegerKey(String dbName, String tableName, String id, ApiObject objSave) throws ApiException {
+        if (shardGroups.containsKey(dbName)) {
+            return saveIntegerKey(shardGroups.get(dbName).poolFor(objSave), tableName, id, objSave);
+        }
+
+        if (bufferSave(dbName, tableName, id, BatchSaver.KeyMode.INTEGER_KEY, objSave)) {
+            return objSave;
+        }
+
+        try (OperationTimer timer = startTimer(dbName, "saveIntegerKey", tableName);
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            ApiObject objRet = SsDbObjects.upsertWithIntegerKey(conn, tableName, id, objSave);
+
+            timer.done(1);
+
+            return objRet;
+        } catch (ApiException apx) {
+            if (apx.getMessage() != null && apx.getMessage().contains("duplicate key")) {
+                throw new ApiException(400, "Duplicate Record", apx);
+            }
+
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            if (ex.getMessage() != null) {
+                if (ex.getMessage().contains("duplicate key")) {
+                    throw new ApiException(400, "Duplicate Record", ex);
+                } else {
+                    throw new ApiException(400, ex.getMessage(), ex);
+                }
+            }
+            throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            invalidateTable(dbName, tableName);
+        }
+    }
+
+    /**
+     * Save an ApiObject into Database with an ID field.
+     * 
+     * <p>Does not expect the Field to be Generated by the Database.</p>
+     * 
+     * @param dbName
+     * @param tableName
+     * @param id
+     * @param objSave
+     * @return
+     * @throws ApiException 
+     */
+    public ApiObject saveStringId(String dbName, String tableName, String id, ApiObject objSave) throws ApiException {
+        if (shardGroups.containsKey(dbName)) {
+            return saveStringId(shardGroups.get(dbName).poolFor(objSave), tableName, id, objSave);
+        }
+
+        if (bufferSave(dbName, tableName, id, BatchSaver.KeyMode.STRING_ID, objSave)) {
+            return objSave;
+        }
+
+        try (OperationTimer timer = startTimer(dbName, "saveStringId", tableName);
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            ApiObject objRet = SsDbObjects.upsertWithId(conn, tableName, id, objSave);
+
+            timer.done(1);
+
+            return objRet;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } finally {
+            invalidateTable(dbName, tableName);
+        }
+    }
+    
+    public ApiObject saveStringKey(String dbName, String tableName, String id, ApiObject objSave) throws ApiException {
+        if (shardGroups.containsKey(dbName)) {
+            return saveStringKey(shardGroups.get(dbName).poolFor(objSave), tableName, id, objSave);
+        }
+
+        if (bufferSave(dbName, tableName, id, BatchSaver.KeyMode.STRING_KEY, objSave)) {
+            return objSave;
+        }
+
+        try (OperationTimer timer = startTimer(dbName, "saveStringKey", tableName);
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            ApiObject objRet = SsDbObjects.upsertWithStringKey(conn, tableName, id, objSave);
+
+            timer.done(1);
+
+            return objRet;
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            invalidateTable(dbName, tableName);
+        }
+    }
+
+    /**
+     * Save a list of ApiObjects with a Database generated Integer key.
+     *
+     * <p>Uses one connection and one transaction, sending rows in JDBC batches
+     * of DB_BATCHSIZE. Rows without the id field are inserted and the
+     * generated key is set on the row, rows with the id field are
+     * updated.</p>
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to save into
+     * @param id The field that is the ID
+     * @param rows The rows to save
+     * @return ApiObject with root list of saved rows, and errors list of
+     * {row, message} if any row failed. When errors exist nothing is
+     * committed.
+     * @throws ApiException
+     */
+    public ApiObject saveAllIntegerKey(String dbName, String tableName, String id, List<ApiObject> rows) throws ApiException {
+        return saveAll(dbName, "saveAllIntegerKey", new BatchSaver(tableName, id, BatchSaver.KeyMode.INTEGER_KEY, getBatchSize(dbName)), rows);
+    }
+
+    /**
+     * Save a list of ApiObjects with a Database generated String key.
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to save into
+     * @param id The field that is the ID
+     * @param rows The rows to save
+     * @return ApiObject with root list of saved rows, and errors list
+     * @throws ApiException
+     * @see #saveAllIntegerKey(String, String, String, List)
+     */
+    public ApiObject saveAllStringKey(String dbName, String tableName, String id, List<ApiObject> rows) throws ApiException {
+        return saveAll(dbName, "saveAllStringKey", new BatchSaver(tableName, id, BatchSaver.KeyMode.STRING_KEY, getBatchSize(dbName)), rows);
+    }
+
+    /**
+     * Save a list of ApiObjects with an ID field.
+     *
+     * <p>Does not expect the Field to be Generated by the Database. Rows are
+     * updated, and rows that do not exist yet are inserted.</p>
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to save into
+     * @param id The field that is the ID
+     * @param rows The rows to save
+     * @return ApiObject with root list of saved rows, and errors list
+     * @throws ApiException
+     * @see #saveAllIntegerKey(String, String, String, List)
+     */
+    public ApiObject saveAllStringId(String dbName, String tableName, String id, List<ApiObject> rows) throws ApiException {
+        return saveAll(dbName, "saveAllStringId", new BatchSaver(tableName, id, BatchSaver.KeyMode.STRING_ID, getBatchSize(dbName)), rows);
+    }
+
+    private ApiObject saveAll(String dbName, String operation, BatchSaver saver, List<ApiObject> rows) throws ApiException {
+        ApiObject objRet = new ApiObject();
+
+        try (OperationTimer timer = startTimer(dbName, operation, saver.getTableName());
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            boolean autoCommit = conn.getAutoCommit();
+
+            conn.setAutoCommit(false);
+
+            try {
+                if (saver.save(conn, rows)) {
+                    conn.commit();
+
+                    timer.done(rows.size());
+                } else {
+                    conn.rollback();
+                    saver.clearGeneratedKeys();
+                }
+            } catch (SQLException sqx) {
+                saver.clearGeneratedKeys();
+                conn.rollback();
+                throw sqx;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } finally {
+            invalidateTable(dbName, saver.getTableName());
+        }
+
+        objRet.setList("root", rows);
+
+        if (!saver.getErrors().isEmpty()) {
+            objRet.setList("errors", saver.getErrors());
+        }
+
+        return objRet;
+    }
+
+    /**
+     * Queue a save for a DB_WRITEBEHIND table. Only saves of an existing key
+     * are queued, inserts need the generated key back.
+     *
+     * @return true if the save was queued
+     */
+    private boolean bufferSave(String dbName, String tableName, String id, BatchSaver.KeyMode keyMode, ApiObject objSave) throws ApiException {
+        Set<String> tables = writeBehindTables.get(dbName);
+
+        if (tables == null || !objSave.isSet(id) || !tables.contains(QueryResultCache.normalize(tableName))) {
+            return false;
+        }
+
+        String key = dbName + "." + QueryResultCache.normalize(tableName);
+        WriteBehindBuffer buffer = writeBehind.get(key);
+
+        if (buffer == null) {
+            HikariDataSource pool = getPool(dbName);
+            ApiObject dbData = dbConfigs.getObject(dbName);
+
+            buffer = writeBehind.computeIfAbsent(key, k -> {
+                WriteBehindBuffer newBuffer = new WriteBehindBuffer(dbName, tableName, id, keyMode,
+                    dbData.isSet(DB_WRITEBEHIND_SIZE) ? Integer.parseInt(dbData.getString(DB_WRITEBEHIND_SIZE)) : DEFAULT_WRITEBEHIND_SIZE,
+                    getBatchSize(dbName),
+                    dbData.isSet(DB_WRITEBEHIND_MS) ? Long.parseLong(dbData.getString(DB_WRITEBEHIND_MS)) : DEFAULT_WRITEBEHIND_MS,
+                    pool.getConnectionTimeout(),
+                    rows -> saveAll(dbName, "writeBehind", new BatchSaver(tableName, id, keyMode, getBatchSize(dbName)), rows));
+
+                newBuffer.start();
+
+                return newBuffer;
+            });
+        }
+
+        if (!buffer.accepts(id, keyMode)) {
+            return false;
+        }
+
+        buffer.put(objSave);
+
+        return true;
+    }
+
+    /**
+     * Write every save queued for the DB_WRITEBEHIND tables of a pool now
+     *
+     * @param dbName The configured Db name
+     * @throws ApiException if a write failed, its rows stay queued
+     */
+    public void flushWriteBehind(String dbName) throws ApiException {
+        for (var entry : writeBehind.entrySet()) {
+            if (entry.getKey().startsWith(dbName + ".")) {
+                entry.getValue().flush();
+            }
+        }
+    }
+
+    /**
+     * Write every queued save and stop the write-behind writers. Runs on JVM
+     * shutdown when any pool has DB_WRITEBEHIND.
+     */
+    public void closeWriteBehind() {
+        for (var key : new ArrayList<>(writeBehind.keySet())) {
+            WriteBehindBuffer buffer = writeBehind.remove(key);
+
+            if (buffer != null) {
+                buffer.close();
+            }
+        }
+    }
+
+    /**
+     * Counters for the DB_WRITEBEHIND tables of a pool
+     *
+     * @param dbName The configured Db name
+     * @return ApiObject with one object per table of pending, saves, merged,
+     * flushes, rowsWritten, rowsDropped, failures, waits and lastFlushMillis
+     */
+    public ApiObject getWriteBehindStats(String dbName) {
+        ApiObject objRet = new ApiObject();
+
+        for (var entry : writeBehind.entrySet()) {
+            if (entry.getKey().startsWith(dbName + ".")) {
+                objRet.setObject(entry.getKey().substring(dbName.length() + 1), entry.getValue().getStats());
+            }
+        }
+
+        return objRet;
+    }
+
+    /**
+     * Insert a large number of rows as fast as the database allows.
+     *
+     * <p>PostgreSQL uses COPY, MariaDB uses LOAD DATA LOCAL INFILE, and other
+     * databases use JDBC batches of DB_BATCHSIZE in one transaction. Rows are
+     * read from the Iterator as they are sent, so memory use does not grow
+     * with the number of rows. Rows are only inserted, generated keys are
+     * not returned.</p>
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to load
+     * @param columnFields Column name to ApiObject field, in column order. Use
+     * a LinkedHashMap.
+     * @param rows Rows to insert
+     * @return ApiObject with rows, millis, rowsPerSecond and method (COPY, LOAD
+     * DATA or BATCH)
+     * @throws ApiException
+     */
+    public ApiObject bulkLoad(String dbName, String tableName, Map<String, String> columnFields, Iterator<ApiObject> rows) throws ApiException {
+        BulkLoader loader = new BulkLoader(tableName, columnFields, getBatchSize(dbName));
+        long start = System.nanoTime();
+        long count;
+
+        try (OperationTimer timer = startTimer(dbName, "bulkLoad", tableName);
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            count = loader.load(conn, getDialect(dbName), rows);
+
+            timer.done((int) Math.min(count, Integer.MAX_VALUE));
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            invalidateTable(dbName, tableName);
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long rowsPerSecond = millis == 0 ? count : count * 1000 / millis;
+
+        log.info("Bulk Load {} {}: {} rows in {} ms, {} rows/s using {}", dbName, tableName, count, millis, rowsPerSecond, loader.getMethod());
+
+        ApiObject objRet = new ApiObject();
+
+        objRet.setLong("rows", count);
+        objRet.setLong("millis", millis);
+        objRet.setLong("rowsPerSecond", rowsPerSecond);
+        objRet.setString("method", loader.getMethod());
+
+        return objRet;
+    }
+
+    /**
+     * Insert a large number of rows as fast as the database allows.
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to load
+     * @param columnFields Column name to ApiObject field, in column order
+     * @param rows Rows to insert, the caller closes the Stream
+     * @return ApiObject with rows, millis, rowsPerSecond and method
+     * @throws ApiException
+     * @see #bulkLoad(String, String, Map, Iterator)
+     */
+    public ApiObject bulkLoad(String dbName, String tableName, Map<String, String> columnFields, Stream<ApiObject> rows) throws ApiException {
+        return bulkLoad(dbName, tableName, columnFields, rows.iterator());
+    }
+
+    int getBatchSize(String dbName) {
+        ApiObject dbData = dbConfigs.getObject(dbName);
+
+        if (dbData != null && dbData.isSet(DB_BATCHSIZE)) {
+            return Integer.parseInt(dbData.getString(DB_BATCHSIZE));
+        } else {
+            return DEFAULT_BATCHSIZE;
+        }
+    }
+
+    /**
+     * Delete a Row from a Database
+     *
+     * @param dbName The configured Db name, or a shard group when fieldName
+     * is its DB_SHARDKEY
+     * @param tableName The table name to delete from
+     * @param fieldName The field that is the ID
+     * @param value The ID to delete
+     * @return True if the SQL ran successfully. Not if the ID didn't exist, an
+     * error is NOT thrown.
+     *
+     * @throws ApiException
+     */
+    public boolean deleteId(String dbName, String tableName, String fieldName, Object value) throws ApiException {
+        ShardRing ring = shardGroups.get(dbName);
+
+        if (ring != null) {
+            if (!fieldName.equals(ring.getKeyField())) {
+                throw new ApiException(400, "Delete On Shard Group Must Use DB_SHARDKEY: " + dbName);
+            }
+
+            return deleteId(ring.poolFor(value), tableName, fieldName, value);
+        }
+
+        try (OperationTimer timer = startTimer(dbName, "deleteId", tableName);
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            String strSql = "DELETE FROM " + tableName + " WHERE " + fieldName + "=?";
+
+            List<Object> args = new ArrayList<>();
+
+            args.add(value);
+
+            SsDbUtils.update(conn, strSql, args.toArray());
+
+            timer.done(-1);
+
+            return true;
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            invalidateTable(dbName, tableName);
+        }
+    }
+
+    /**
+     * Run SQL with field replacement
+     *
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return ApiObject with a root list of returned rows
+     * @throws ApiException
+     */
+    public ApiObject getSQLRows(String dbName, String sql, ApiObject search) throws ApiException {
+        return readThrough(dbName, sql, QueryResultCache.tablesOf(sql), search, getCacheTtl(dbName, sql),
+            () -> querySQLRows(dbName, sql, search));
+    }
+
+    private ApiObject querySQLRows(String dbName, String sql, ApiObject search) throws ApiException {
+        SqlTemplate template = templateCache.get(sql);
+
+        try (OperationTimer timer = startSqlTimer(dbName, "getSQLRows", sql)
+            .describe(template.getSql(), search, ps -> template.bind(ps, search));
+            Connection conn = timer.acquired(getReadConnection(dbName))) {
+            return timer.done(SsDbUtils.querySqlAsApiObject(conn, template.getSql(), template.args(search)));
+        } catch (ApiException apx) {
+            throw apx;
         } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
+            throw Deadline.toApiException(sqx);
         } catch (Exception ex) {
             throw new ApiException(400, ex.getMessage(), ex);
         }
     }
 
     /**
-     * Delete a Row from a Database
+     * Run SQL with field replacement
+     *
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return ApiObject with a root list of returned rows
+     * @throws ApiException
+     */
+    public ApiObject getSQLRows(String dbName, String sql, Object[] search) throws ApiException {
+        return readThrough(dbName, sql, QueryResultCache.tablesOf(sql), search, getCacheTtl(dbName, sql),
+            () -> querySQLRows(dbName, sql, search));
+    }
+
+    private ApiObject querySQLRows(String dbName, String sql, Object[] search) throws ApiException {
+        try (OperationTimer timer = startSqlTimer(dbName, "getSQLRows", sql)
+            .describe(sql, search, ps -> SqlTemplate.bind(ps, search));
+            Connection conn = timer.acquired(getReadConnection(dbName))) {
+            return timer.done(SsDbUtils.querySqlAsApiObject(conn, sql, search));
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Run SQL with field replacement, holding the result by column in
+     * primitive arrays instead of an ApiObject per row.
+     *
+     * <p>Use for large numeric results, such as reports, where boxed values
+     * in a map per row take several times the size of the data.</p>
      *
      * @param dbName The configured Db name
-     * @param tableName The table name to delete from
-     * @param fieldName The field that is the ID
-     * @param value The ID to delete
-     * @return True if the SQL ran successfully. Not if the ID didn't exist, an
-     * error is NOT thrown.
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return The rows by column
+     * @throws ApiException
+     * @see ColumnarResult
+     */
+    public ColumnarResult getSQLColumns(String dbName, String sql, ApiObject search) throws ApiException {
+        SqlTemplate template = templateCache.get(sql);
+
+        return queryColumns(dbName, template.getSql(), sql, ps -> template.bind(ps, search));
+    }
+
+    /**
+     * Run SQL with positional arguments, holding the result by column in
+     * primitive arrays.
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param args Values for each ? in the SQL
+     * @return The rows by column
+     * @throws ApiException
+     * @see #getSQLColumns(String, String, ApiObject)
+     */
+    public ColumnarResult getSQLColumns(String dbName, String sql, Object[] args) throws ApiException {
+        return queryColumns(dbName, sql, sql, ps -> SqlTemplate.bind(ps, args));
+    }
+
+    private ColumnarResult queryColumns(String dbName, String sql, String source, StatementBinder binder) throws ApiException {
+        try (OperationTimer timer = startSqlTimer(dbName, "getSQLColumns", source).describe(sql, null, binder);
+            Connection conn = timer.acquired(getReadConnection(dbName))) {
+            boolean autoCommit = conn.getAutoCommit();
+
+            try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // Fetch in chunks so the driver does not also hold every row
+                getDialect(dbName).prepareStreaming(conn, ps, getFetchSize(dbName));
+
+                binder.bind(ps);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    ColumnarResult result = ColumnarResult.read(rs, getFetchSize(dbName));
+
+                    timer.done(result.getRowCount());
+
+                    return result;
+                }
+            } finally {
+                if (autoCommit && !conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Run SQL with field replacement, reading rows as the Stream is consumed.
+     *
+     * <p>The pooled connection is held until the Stream is exhausted or
+     * closed. Always use try-with-resources:</p>
+     *
+     * <pre>
+     * try (Stream&lt;ApiObject&gt; rows = db.streamSQLRows(dbName, sql, search)) {
+     *     rows.forEach(row -&gt; ...);
+     * }
+     * </pre>
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return Stream of rows, which MUST be closed
+     * @throws ApiException
+     */
+    public Stream<ApiObject> streamSQLRows(String dbName, String sql, ApiObject search) throws ApiException {
+        SqlTemplate template = templateCache.get(sql);
+
+        return openRowStream(dbName, template.getSql(), sql, ps -> template.bind(ps, search));
+    }
+
+    /**
+     * Run SQL with positional arguments, reading rows as the Stream is
+     * consumed.
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param search Values for each ? in the SQL
+     * @return Stream of rows, which MUST be closed
+     * @throws ApiException
+     * @see #streamSQLRows(String, String, ApiObject)
+     */
+    public Stream<ApiObject> streamSQLRows(String dbName, String sql, Object[] search) throws ApiException {
+        return openRowStream(dbName, sql, sql, ps -> SqlTemplate.bind(ps, search));
+    }
+
+    /**
+     * Run SQL with field replacement, passing each row to rowHandler.
+     *
+     * <p>Only one row is held in memory at a time.</p>
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param rowHandler Called for each row returned
+     * @throws ApiException
+     */
+    public void forEachSQLRow(String dbName, String sql, ApiObject search, Consumer<ApiObject> rowHandler) throws ApiException {
+        try (Stream<ApiObject> rows = streamSQLRows(dbName, sql, search)) {
+            rows.forEach(rowHandler);
+        } catch (IllegalStateException isx) {
+            throw rowReadFailed(isx);
+        }
+    }
+
+    /**
+     * Run SQL with positional arguments, passing each row to rowHandler.
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param search Values for each ? in the SQL
+     * @param rowHandler Called for each row returned
+     * @throws ApiException
+     */
+    public void forEachSQLRow(String dbName, String sql, Object[] search, Consumer<ApiObject> rowHandler) throws ApiException {
+        try (Stream<ApiObject> rows = streamSQLRows(dbName, sql, search)) {
+            rows.forEach(rowHandler);
+        } catch (IllegalStateException isx) {
+            throw rowReadFailed(isx);
+        }
+    }
+
+    /**
+     * ApiException for a row read that failed inside a stream,
+     * DEADLINE_EXCEEDED if the statement timed out or was cancelled
+     */
+    private static ApiException rowReadFailed(IllegalStateException isx) {
+        if (isx.getCause() instanceof SQLTimeoutException sqx) {
+            return Deadline.toApiException(sqx);
+        }
+
+        return new ApiException(500, isx.getMessage(), isx.getCause());
+    }
+
+    interface StatementBinder {
+
+        void bind(PreparedStatement ps) throws SQLException, ApiException;
+    }
+
+    /**
+     * Run SQL with field replacement, writing the rows to a channel as they
+     * are read.
+     *
+     * <p>Rows are encoded from the ResultSet into a reused buffer, without
+     * building ApiObjects, so memory stays flat no matter how many rows are
+     * exported. Rows are read with DB_FETCHSIZE like streamSQLRows.</p>
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param format CSV or JSON_LINES
+     * @param gzip true to gzip the output
+     * @param out Channel to write to, it is not closed
+     * @return Rows written
+     * @throws ApiException 500 if writing failed
+     */
+    public long exportSQL(String dbName, String sql, ApiObject search, ExportFormat format, boolean gzip, WritableByteChannel out) throws ApiException {
+        SqlTemplate template = templateCache.get(sql);
+
+        return export(dbName, template.getSql(), sql, ps -> template.bind(ps, search), format, gzip, out);
+    }
+
+    /**
+     * Run SQL with positional arguments, writing the rows to a channel as
+     * they are read.
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param args Values for each ? in the SQL
+     * @param format CSV or JSON_LINES
+     * @param gzip true to gzip the output
+     * @param out Channel to write to, it is not closed
+     * @return Rows written
+     * @throws ApiException
+     * @see #exportSQL(String, String, ApiObject, ExportFormat, boolean, WritableByteChannel)
+     */
+    public long exportSQL(String dbName, String sql, Object[] args, ExportFormat format, boolean gzip, WritableByteChannel out) throws ApiException {
+        return export(dbName, sql, sql, ps -> SqlTemplate.bind(ps, args), format, gzip, out);
+    }
+
+    /**
+     * Run SQL with field replacement, writing the rows to a file. The file is
+     * created, or replaced if it exists.
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param format CSV or JSON_LINES
+     * @param gzip true to gzip the output
+     * @param file The file to write
+     * @return Rows written
+     * @throws ApiException
+     * @see #exportSQL(String, String, ApiObject, ExportFormat, boolean, WritableByteChannel)
+     */
+    public long exportSQL(String dbName, String sql, ApiObject search, ExportFormat format, boolean gzip, Path file) throws ApiException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return exportSQL(dbName, sql, search, format, gzip, out);
+        } catch (IOException iox) {
+            throw new ApiException(500, "Export File Failed: " + iox.getMessage(), iox);
+        }
+    }
+
+    /**
+     * Run SQL with positional arguments, writing the rows to a file. The file
+     * is created, or replaced if it exists.
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param args Values for each ? in the SQL
+     * @param format CSV or JSON_LINES
+     * @param gzip true to gzip the output
+     * @param file The file to write
+     * @return Rows written
+     * @throws ApiException
+     * @see #exportSQL(String, String, ApiObject, ExportFormat, boolean, WritableByteChannel)
+     */
+    public long exportSQL(String dbName, String sql, Object[] args, ExportFormat format, boolean gzip, Path file) throws ApiException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return exportSQL(dbName, sql, args, format, gzip, out);
+        } catch (IOException iox) {
+            throw new ApiException(500, "Export File Failed: " + iox.getMessage(), iox);
+        }
+    }
+
+    private long export(String dbName, String sql, String source, StatementBinder binder, ExportFormat format, boolean gzip, WritableByteChannel out) throws ApiException {
+        OperationTimer timer = startSqlTimer(dbName, "exportSQL", source).describe(sql, null, binder);
+        Connection conn;
+
+        try {
+            conn = timer.acquired(getReadConnection(dbName));
+        } catch (ApiException apx) {
+            timer.close();
+            throw apx;
+        }
+
+        PreparedStatement ps = null;
+        boolean autoCommit = true;
+
+        try (timer) {
+            autoCommit = conn.getAutoCommit();
+
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            getDialect(dbName).prepareStreaming(conn, ps, getFetchSize(dbName));
+
+            binder.bind(ps);
+
+            long rows;
+
+            try (ResultSet rs = ps.executeQuery()) {
+                if (gzip) {
+                    // Closing the gzip stream frees its Deflater, the caller's channel stays open
+                    OutputStream channelOut = new FilterOutputStream(Channels.newOutputStream(out)) {
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            this.out.write(b, off, len);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            flush();
+                        }
+                    };
+
+                    try (GZIPOutputStream zip = new GZIPOutputStream(channelOut, 64 * 1024)) {
+                        rows = ResultExporter.export(rs, format, Channels.newChannel(zip));
+                    }
+                } else {
+                    rows = ResultExporter.export(rs, format, out);
+                }
+            }
+
+            timer.done((int) Math.min(rows, Integer.MAX_VALUE));
+
+            return rows;
+        } catch (IOException iox) {
+            throw new ApiException(500, "Export Write Failed: " + iox.getMessage(), iox);
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            closeQuietly(conn, ps, autoCommit);
+        }
+    }
+
+    private Stream<ApiObject> openRowStream(String dbName, String sql, String source, StatementBinder binder) throws ApiException {
+        OperationTimer timer = startSqlTimer(dbName, "streamSQLRows", source).describe(sql, null, binder);
+        Connection conn;
+
+        try {
+            conn = timer.acquired(getReadConnection(dbName));
+        } catch (ApiException apx) {
+            timer.close();
+            throw apx;
+        }
+
+        PreparedStatement ps = null;
+        boolean autoCommit = true;
+
+        // Times the query up to the first row, rows are read by the caller
+        try (timer) {
+            autoCommit = conn.getAutoCommit();
+
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            getDialect(dbName).prepareStreaming(conn, ps, getFetchSize(dbName));
+
+            binder.bind(ps);
+
+            ResultSet rs = ps.executeQuery();
+
+            timer.done(-1);
+
+            return new RowStream(conn, ps, rs, autoCommit && !conn.getAutoCommit()).stream();
+        } catch (SQLException sqx) {
+            closeQuietly(conn, ps, autoCommit);
+            throw Deadline.toApiException(sqx);
+        } catch (ApiException apx) {
+            closeQuietly(conn, ps, autoCommit);
+            throw apx;
+        } catch (Exception ex) {
+            closeQuietly(conn, ps, autoCommit);
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    private void closeQuietly(Connection conn, PreparedStatement ps, boolean autoCommit) {
+        try {
+            if (ps != null) {
+                ps.close();
+            }
+
+            if (autoCommit && !conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException sqx) {
+            log.warn("Statement Close Failed: {}", sqx.getMessage());
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException sqx) {
+                log.warn("Connection Close Failed: {}", sqx.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Return the dialect detected for a pool
+     *
+     * @param dbName The configured Db name
+     * @return The dialect, OTHER if the pool is not known
+     */
+    public DbDialect getDialect(String dbName) {
+        return dialects.getOrDefault(dbName, DbDialect.OTHER);
+    }
+
+    /**
+     * Return the database details read when the pool started
+     *
+     * @param dbName The configured Db name
+     * @return The metadata, null if the pool is not known or could not be
+     * read
+     */
+    public PoolMetadata getPoolMetadata(String dbName) {
+        PoolMetadata poolMeta = metadata.get(dbName);
+
+        if (poolMeta == null) {
+            poolMeta = readMetadata(dbName, ds.get(dbName));
+        }
+
+        return poolMeta;
+    }
+
+    private int getFetchSize(String dbName) {
+        ApiObject dbData = dbConfigs.getObject(dbName);
+
+        if (dbData != null && dbData.isSet(DB_FETCHSIZE)) {
+            return Integer.parseInt(dbData.getString(DB_FETCHSIZE));
+        } else {
+            return DEFAULT_FETCHSIZE;
+        }
+    }
+
+    public ApiObject getSQLFirstRow(String dbName, String sql, ApiObject search) throws ApiException {
+        ApiObject objResp = getSQLRows(dbName, sql, search);
+
+        if (objResp.isSet("root") && !objResp.getList("root").isEmpty()) {
+            return objResp.getObject("root[0]");
+        } else {
+            return null;
+        }
+    }
+
+    public ApiObject getSQLFirstRow(String dbName, String sql, Object[] search) throws ApiException {
+        ApiObject objResp = getSQLRows(dbName, sql, search);
+
+        if (objResp.isSet("root") && !objResp.getList("root").isEmpty()) {
+            return objResp.getObject("root[0]");
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Run SQL with field replacement, building a record from each row.
+     *
+     * <p>Rows are read straight into the record through a mapper made once
+     * for the record type and the columns returned, with no ApiObject in
+     * between. Record components match columns by name, ignoring case and
+     * underscores. Results are not cached or shared.</p>
+     *
+     * @param <T> The record type
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param type The record class
+     * @return The records, in row order
+     * @throws ApiException 400 if a component has no column
+     */
+    public <T extends Record> List<T> getSQLRows(String dbName, String sql, ApiObject search, Class<T> type) throws ApiException {
+        SqlTemplate template = templateCache.get(sql);
+
+        return queryRecords(startSqlTimer(dbName, "getSQLRows", sql), dbName, template.getSql(), search,
+            ps -> template.bind(ps, search), type, 0);
+    }
+
+    /**
+     * Run SQL with positional arguments, building a record from each row.
+     *
+     * @param <T> The record type
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param args Values for each ? in the SQL
+     * @param type The record class
+     * @return The records, in row order
+     * @throws ApiException
+     * @see #getSQLRows(String, String, ApiObject, Class)
+     */
+    public <T extends Record> List<T> getSQLRows(String dbName, String sql, Object[] args, Class<T> type) throws ApiException {
+        return queryRecords(startSqlTimer(dbName, "getSQLRows", sql), dbName, sql, args, ps -> SqlTemplate.bind(ps, args), type, 0);
+    }
+
+    /**
+     * Run SQL with field replacement, building a record from the first row.
      *
+     * @param <T> The record type
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param type The record class
+     * @return The record, null if no row was returned
      * @throws ApiException
+     * @see #getSQLRows(String, String, ApiObject, Class)
      */
-    public boolean deleteId(String dbName, String tableName, String fieldName, Object value) throws ApiException {
-        try (Connection conn = ds.get(dbName).getConnection()) {
-            String strSql = "DELETE FROM " + tableName + " WHERE " + fieldName + "=?";
-
-            List<Object> args = new ArrayList<>();
-
-            args.add(value);
+    public <T extends Record> T getSQLFirstRow(String dbName, String sql, ApiObject search, Class<T> type) throws ApiException {
+        SqlTemplate template = templateCache.get(sql);
 
-            SsDbUtils.update(conn, strSql, args.toArray());
+        List<T> rows = queryRecords(startSqlTimer(dbName, "getSQLFirstRow", sql), dbName, template.getSql(), search,
+            ps -> template.bind(ps, search), type, 1);
 
-            return true;
-        } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
-        } catch (Exception ex) {
-            throw new ApiException(400, ex.getMessage(), ex);
-        }
+        return rows.isEmpty() ? null : rows.get(0);
     }
 
     /**
-     * Run SQL with field replacement
+     * Run SQL with positional arguments, building a record from the first
+     * row.
      *
-     * @param sql SQL with :{field} replaceable values.
-     * @param search Values in SQL string with :{field} MUST exist in search
-     * @return ApiObject with a root list of returned rows
+     * @param <T> The record type
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param args Values for each ? in the SQL
+     * @param type The record class
+     * @return The record, null if no row was returned
      * @throws ApiException
+     * @see #getSQLRows(String, String, ApiObject, Class)
      */
-    public ApiObject getSQLRows(String dbName, String sql, ApiObject search) throws ApiException {
-        try (Connection conn = getConnection(dbName)) {
-            return SsDbUtils.querySqlAsApiObject(conn, sql, search);
-        } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
-        } catch (Exception ex) {
-            throw new ApiException(400, ex.getMessage(), ex);
-        }
+    public <T extends Record> T getSQLFirstRow(String dbName, String sql, Object[] args, Class<T> type) throws ApiException {
+        List<T> rows = queryRecords(startSqlTimer(dbName, "getSQLFirstRow", sql), dbName, sql, args, ps -> SqlTemplate.bind(ps, args), type, 1);
+
+        return rows.isEmpty() ? null : rows.get(0);
     }
 
     /**
-     * Run SQL with field replacement
+     * Read the rows of a table matching searchObj, building a record from
+     * each row.
      *
-     * @param sql SQL with :{field} replaceable values.
-     * @param search Values in SQL string with :{field} MUST exist in search
-     * @return ApiObject with a root list of returned rows
-     * @throws ApiException
+     * @param <T> The record type
+     * @param dbName The configured Db name
+     * @param tableName The table to read
+     * @param searchObj Fields that must equal the value, a List value matches
+     * any of the values, with orderBy, start and length applied as in
+     * {@link #getTable(String, String, ApiObject)}. May be null.
+     * @param type The record class
+     * @return The records
+     * @throws ApiException 400 if a field name is not a plain identifier
+     * @see #getSQLRows(String, String, ApiObject, Class)
      */
-    public ApiObject getSQLRows(String dbName, String sql, Object[] search) throws ApiException {
-        try (Connection conn = getConnection(dbName)) {
-            return SsDbUtils.querySqlAsApiObject(conn, sql, search);
-        } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
-        } catch (Exception ex) {
-            throw new ApiException(400, ex.getMessage(), ex);
+    public <T extends Record> List<T> getTable(String dbName, String tableName, ApiObject searchObj, Class<T> type) throws ApiException {
+        if (shardGroups.containsKey(dbName)) {
+            return getTable(shardGroups.get(dbName).poolFor(searchObj), tableName, searchObj, type);
         }
-    }
 
-    public ApiObject getSQLFirstRow(String dbName, String sql, ApiObject search) throws ApiException {
-        ApiObject objResp = getSQLRows(dbName, sql, search);
+        StringBuilder sb = new StringBuilder("SELECT * FROM ").append(KeysetPage.checkIdentifier(tableName));
+        List<Object> args = new ArrayList<>();
 
-        if (objResp.isSet("root")) {
-            return objResp.getObject("root[0]");
-        } else {
-            return null;
+        KeysetPage.appendFilters(sb, searchObj, args, FIND_CONTROLS);
+
+        if (searchObj != null && FIND_ORDER_LIMIT.stream().anyMatch(searchObj::isSet)) {
+            applyOrderAndLimit(dbName, sb, searchObj);
         }
+
+        Object[] bindArgs = args.toArray();
+
+        return queryRecords(startTimer(dbName, "getTable", tableName), dbName, sb.toString(), bindArgs, ps -> SqlTemplate.bind(ps, bindArgs), type, 0);
     }
 
-    public ApiObject getSQLFirstRow(String dbName, String sql, Object[] search) throws ApiException {
-        ApiObject objResp = getSQLRows(dbName, sql, search);
+    private <T extends Record> List<T> queryRecords(OperationTimer timer, String dbName, String sql, Object params,
+        StatementBinder binder, Class<T> type, int maxRows) throws ApiException {
+        timer.describe(sql, params, binder);
 
-        if (objResp.isSet("root")) {
-            return objResp.getObject("root[0]");
-        } else {
-            return null;
+        try (timer;
+            Connection conn = timer.acquired(getReadConnection(dbName));
+            PreparedStatement ps = conn.prepareStatement(sql)) {
+            binder.bind(ps);
+
+            if (maxRows > 0) {
+                ps.setMaxRows(maxRows);
+            }
+
+            List<T> rows = new ArrayList<>();
+
+            try (ResultSet rs = ps.executeQuery()) {
+                RecordMapper<T> mapper = RecordMapper.of(type, rs.getMetaData());
+                long mapNanos = 0;
+
+                while (rs.next()) {
+                    long start = System.nanoTime();
+
+                    rows.add(mapper.map(rs));
+
+                    mapNanos += System.nanoTime() - start;
+                }
+
+                timer.mapped(mapNanos);
+            }
+
+            timer.done(rows.size());
+
+            return rows;
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
         }
     }
 
     public Integer executeSQL(String dbName, String sql, ApiObject search) throws ApiException {
-        try (Connection conn = getConnection(dbName)) {
-            return SsDbUtils.updateObjectWithCount(conn, sql, search);
+        SqlTemplate template = templateCache.get(sql);
+
+        try (OperationTimer timer = startSqlTimer(dbName, "executeSQL", sql)
+            .describe(template.getSql(), search, ps -> template.bind(ps, search));
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            Integer count = SsDbUtils.updateWithCount(conn, template.getSql(), template.args(search));
+
+            timer.done(count == null ? -1 : count);
+
+            return count;
+        } catch (ApiException apx) {
+            throw apx;
         } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
+            throw Deadline.toApiException(sqx);
         } catch (Exception ex) {
             throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            invalidateSql(dbName, sql);
         }
     }
 
     public Integer executeSQL(String dbName, String sql, Object[] args) throws ApiException {
-        try (Connection conn = getConnection(dbName)) {
-            return SsDbUtils.updateWithCount(conn, sql, args);
+        try (OperationTimer timer = startSqlTimer(dbName, "executeSQL", sql)
+            .describe(sql, args, ps -> SqlTemplate.bind(ps, args));
+            Connection conn = timer.acquired(getConnection(dbName))) {
+            Integer count = SsDbUtils.updateWithCount(conn, sql, args);
+
+            timer.done(count == null ? -1 : count);
+
+            return count;
+        } catch (ApiException apx) {
+            throw apx;
         } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
+            throw Deadline.toApiException(sqx);
         } catch (Exception ex) {
             throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            invalidateSql(dbName, sql);
         }
     }
 
     public String getSqlString(String dbName, String sql, Object[] args) throws ApiException {
-        try (Connection conn = getConnection(dbName)) {
-            return SsDbUtils.queryForString(conn, sql, args);
+        try (OperationTimer timer = startSqlTimer(dbName, "getSqlString", sql)
+            .describe(sql, args, ps -> SqlTemplate.bind(ps, args));
+            Connection conn = timer.acquired(getReadConnection(dbName))) {
+            String strRet = SsDbUtils.queryForString(conn, sql, args);
+
+            timer.done(strRet == null ? 0 : 1);
+
+            return strRet;
+        } catch (ApiException apx) {
+            throw apx;
         } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
+            throw Deadline.toApiException(sqx);
         } catch (Exception ex) {
             throw new ApiException(400, ex.getMessage(), ex);
         }
     }
 
     public Integer getSqlInteger(String dbName, String sql, Object[] args) throws ApiException {
+        try (OperationTimer timer = startSqlTimer(dbName, "getSqlInteger", sql)
+            .describe(sql, args, ps -> SqlTemplate.bind(ps, args));
+            Connection conn = timer.acquired(getReadConnection(dbName))) {
+            Integer iRet = SsDbUtils.queryForInt(conn, sql, args);
+
+            timer.done(iRet == null ? 0 : 1);
+
+            return iRet;
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    SqlTemplate getSqlTemplate(String sql) {
+        return templateCache.get(sql);
+    }
+
+    /**
+     * Run work on one connection in one transaction.
+     *
+     * <pre>
+     * db.inTransaction(dbName, tx -&gt; {
+     *     ApiObject order = tx.getSQLFirstRow(sql, search);
+     *     tx.saveIntegerKey("order_line", "id", line);
+     *     return null;
+     * });
+     * </pre>
+     *
+     * <p>Commits when work returns, rolls back when it throws or calls
+     * setRollbackOnly. Always runs on the primary.</p>
+     *
+     * @param <T> Type returned from work
+     * @param dbName The configured Db name
+     * @param work The operations to run
+     * @return The value returned from work
+     * @throws ApiException
+     */
+    public <T> T inTransaction(String dbName, TransactionWork<T> work) throws ApiException {
+        return inTransaction(dbName, -1, false, work);
+    }
+
+    /**
+     * Run work on one connection in one transaction.
+     *
+     * @param <T> Type returned from work
+     * @param dbName The configured Db name
+     * @param isolation Connection.TRANSACTION_* level, -1 for the pool
+     * default
+     * @param readOnly Hint to the driver that no writes will be made
+     * @param work The operations to run
+     * @return The value returned from work
+     * @throws ApiException
+     * @see #inTransaction(String, TransactionWork)
+     */
+    public <T> T inTransaction(String dbName, int isolation, boolean readOnly, TransactionWork<T> work) throws ApiException {
+        DbTransaction tx = null;
+
         try (Connection conn = getConnection(dbName)) {
-            return SsDbUtils.queryForInt(conn, sql, args);
+            boolean autoCommit = conn.getAutoCommit();
+            int lclIsolation = conn.getTransactionIsolation();
+            boolean lclReadOnly = conn.isReadOnly();
+
+            if (isolation >= 0) {
+                conn.setTransactionIsolation(isolation);
+            }
+
+            if (readOnly) {
+                conn.setReadOnly(true);
+            }
+
+            conn.setAutoCommit(false);
+
+            try {
+                tx = new DbTransaction(this, dbName, conn);
+
+                T ret = work.run(tx);
+
+                if (tx.isRollbackOnly()) {
+                    conn.rollback();
+                    tx.rolledBack();
+                } else {
+                    conn.commit();
+                }
+
+                return ret;
+            } catch (Exception ex) {
+                if (tx != null) {
+                    tx.rolledBack();
+                }
+
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+
+                if (isolation >= 0) {
+                    conn.setTransactionIsolation(lclIsolation);
+                }
+
+                if (readOnly) {
+                    conn.setReadOnly(lclReadOnly);
+                }
+            }
+        } catch (ApiException apx) {
+            throw apx;
         } catch (SQLException sqx) {
-            throw new ApiException(500, sqx.getMessage(), sqx);
+            throw Deadline.toApiException(sqx);
         } catch (Exception ex) {
             throw new ApiException(400, ex.getMessage(), ex);
+        } finally {
+            if (tx != null) {
+                if (tx.hasUnknownTables()) {
+                    clearResultCache(dbName);
+                } else {
+                    for (var table : tx.getTables()) {
+                        invalidateTable(dbName, table);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection wait counters for a pool
+     *
+     * @param dbName The configured Db name
+     * @return ApiObject with maxPermits, limit, inUse, waiting and maxQueue,
+     * a breaker object with state, opened and rejected when DB_BREAKER is set,
+     * and a replicas list when read replicas are configured, null if the pool
+     * is not known
+     */
+    public ApiObject getPoolStats(String dbName) {
+        PoolGate gate = gates.get(dbName);
+
+        if (gate == null) {
+            return null;
+        }
+
+        ApiObject objRet = gate.getStats();
+
+        if (replicas.containsKey(dbName)) {
+            objRet.setList("replicas", replicas.get(dbName).getStats());
+        }
+
+        return objRet;
+    }
+
+    /**
+     * Pool of a shard group that holds a shard key
+     *
+     * <p>getTable, saveIntegerKey, saveStringId, saveStringKey and deleteId
+     * route on their own when given the group name, use this to run other
+     * calls on the right pool.</p>
+     *
+     * @param group The DB_SHARDS group name
+     * @param key The shard key value
+     * @return The configured Db name to use
+     * @throws ApiException 400 if the group is not known or the key is null
+     */
+    public String getShard(String group, Object key) throws ApiException {
+        return getShardGroup(group).poolFor(key);
+    }
+
+    /**
+     * Pools of a shard group
+     *
+     * @param group The DB_SHARDS group name
+     * @return The configured Db names in the group
+     * @throws ApiException 400 if the group is not known
+     */
+    public List<String> getShardPools(String group) throws ApiException {
+        return getShardGroup(group).getPools();
+    }
+
+    private ShardRing getShardGroup(String group) throws ApiException {
+        ShardRing ring = shardGroups.get(group);
+
+        if (ring == null) {
+            throw new ApiException(400, "Shard Group Not Found: " + group);
+        }
+
+        return ring;
+    }
+
+    /**
+     * Run SQL on every pool of a shard group and merge the rows.
+     *
+     * <p>Each pool runs the SQL ordered by sortKeys and limited to limit rows
+     * at the same time on its own virtual thread, so the wait is that of the
+     * slowest pool. The rows are then merged in sortKeys order, reading only
+     * as many as are returned. Do not put ORDER BY or LIMIT in the SQL, they
+     * are added around it.</p>
+     *
+     * <p>Holds one connection per pool until the Stream is exhausted or
+     * closed. Always use try-with-resources.</p>
+     *
+     * @param group The DB_SHARDS group name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param sortKeys Column names, each optionally followed by ASC or DESC,
+     * null to return the rows of each pool in turn
+     * @param limit Max rows over all pools, 0 for no limit
+     * @return Stream of rows, which MUST be closed
+     * @throws ApiException 400 if the group is not known or a sort key is not
+     * valid, or the failure of the first pool that failed
+     */
+    public Stream<ApiObject> streamShardRows(String group, String sql, ApiObject search, List<String> sortKeys, int limit) throws ApiException {
+        ShardRing ring = getShardGroup(group);
+        ShardMerge merge = new ShardMerge(sortKeys, limit);
+
+        List<CompletableFuture<Stream<ApiObject>>> opening = new ArrayList<>();
+
+        for (var pool : ring.getPools()) {
+            opening.add(runAsync(() -> {
+                // Start a lazy pool first, the dialect is known once it is up
+                getPool(pool);
+
+                return streamSQLRows(pool, merge.shardSql(getDialect(pool), sql), search);
+            }));
+        }
+
+        List<Stream<ApiObject>> shards = new ArrayList<>();
+        Throwable failure = null;
+
+        for (var future : opening) {
+            try {
+                shards.add(future.join());
+            } catch (CompletionException cex) {
+                if (failure == null) {
+                    failure = cex.getCause();
+                }
+            }
+        }
+
+        if (failure != null) {
+            shards.forEach(Stream::close);
+
+            if (failure instanceof ApiException apx) {
+                throw apx;
+            }
+
+            throw new ApiException(500, failure.getMessage(), failure);
         }
+
+        return merge.merge(shards);
+    }
+
+    /**
+     * Run SQL on every pool of a shard group and merge the rows
+     *
+     * @param group The DB_SHARDS group name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @param sortKeys Column names, each optionally followed by ASC or DESC,
+     * null to return the rows of each pool in turn
+     * @param limit Max rows over all pools, 0 for no limit
+     * @return ApiObject with a root list of rows
+     * @throws ApiException
+     * @see #streamShardRows(String, String, ApiObject, List, int)
+     */
+    public ApiObject getShardRows(String group, String sql, ApiObject search, List<String> sortKeys, int limit) throws ApiException {
+        ApiObject objRet = new ApiObject();
+
+        try (Stream<ApiObject> rows = streamShardRows(group, sql, search, sortKeys, limit)) {
+            objRet.setList("root", new ArrayList<>(rows.toList()));
+        } catch (IllegalStateException isx) {
+            throw rowReadFailed(isx);
+        }
+
+        return objRet;
+    }
+
+    private interface AsyncCall<T> {
+
+        T run() throws ApiException;
+    }
+
+    private <T> CompletableFuture<T> runAsync(AsyncCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        QueryScope scope = QueryScope.current();
+        Deadline deadline = Deadline.current();
+
+        asyncExecutor.execute(() -> {
+            QueryScope.enter(scope);
+            Deadline.enter(deadline);
+
+            try {
+                future.complete(call.run());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                QueryScope.enter(null);
+                Deadline.enter(null);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Run {@link #getTable(String, String, ApiObject)} on a virtual thread
+     *
+     * @param dbName The configured Db name
+     * @param tableName The table to search
+     * @param searchObj Search fields
+     * @return Future completed with the rows, or with an ApiException
+     */
+    public CompletableFuture<ApiObject> getTableAsync(String dbName, String tableName, ApiObject searchObj) {
+        return runAsync(() -> getTable(dbName, tableName, searchObj));
+    }
+
+    /**
+     * Run {@link #getSQLRows(String, String, ApiObject)} on a virtual thread
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return Future completed with the rows, or with an ApiException
+     */
+    public CompletableFuture<ApiObject> getSQLRowsAsync(String dbName, String sql, ApiObject search) {
+        return runAsync(() -> getSQLRows(dbName, sql, search));
+    }
+
+    /**
+     * Run {@link #getSQLRows(String, String, Object[])} on a virtual thread
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param search Values for each ? in the SQL
+     * @return Future completed with the rows, or with an ApiException
+     */
+    public CompletableFuture<ApiObject> getSQLRowsAsync(String dbName, String sql, Object[] search) {
+        return runAsync(() -> getSQLRows(dbName, sql, search));
+    }
+
+    /**
+     * Run {@link #getSQLFirstRow(String, String, ApiObject)} on a virtual
+     * thread
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return Future completed with the first row or null, or with an
+     * ApiException
+     */
+    public CompletableFuture<ApiObject> getSQLFirstRowAsync(String dbName, String sql, ApiObject search) {
+        return runAsync(() -> getSQLFirstRow(dbName, sql, search));
+    }
+
+    /**
+     * Run {@link #executeSQL(String, String, ApiObject)} on a virtual thread
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with :{field} replaceable values.
+     * @param search Values in SQL string with :{field} MUST exist in search
+     * @return Future completed with the update count, or with an ApiException
+     */
+    public CompletableFuture<Integer> executeSQLAsync(String dbName, String sql, ApiObject search) {
+        return runAsync(() -> executeSQL(dbName, sql, search));
+    }
+
+    /**
+     * Run {@link #executeSQL(String, String, Object[])} on a virtual thread
+     *
+     * @param dbName The configured Db name
+     * @param sql SQL with ? for each argument
+     * @param args Values for each ? in the SQL
+     * @return Future completed with the update count, or with an ApiException
+     */
+    public CompletableFuture<Integer> executeSQLAsync(String dbName, String sql, Object[] args) {
+        return runAsync(() -> executeSQL(dbName, sql, args));
     }
 
     /**
@@ -442,6 +2630,29 @@ public class DataManager implements ApiService {
      * @throws ApiException
      */
     public void applyOrderAndLimit(String dbName, StringBuilder sb, ApiObject searchObj) throws ApiException {
+        PoolMetadata poolMeta = getPoolMetadata(dbName);
+
+        if (poolMeta != null && !poolMeta.isConnectionNeeded()) {
+            int len = sb.length();
+
+            try {
+                SsDbObjects.applyOrderBy(poolMeta.getConnection(), searchObj, sb);
+
+                SsDbObjects.applyLimit(poolMeta.getConnection(), searchObj, sb);
+
+                return;
+            } catch (Exception ex) {
+                if (needsConnection(ex)) {
+                    // SsDbObjects needed more than the metadata, use a real connection for this pool from now on
+                    log.warn("applyOrderAndLimit Needs A Connection On {}: {}", dbName, ex.getMessage());
+
+                    poolMeta.setConnectionNeeded();
+                }
+
+                sb.setLength(len);
+            }
+        }
+
         try (Connection conn = getConnection(dbName)) {
             SsDbObjects.applyOrderBy(conn, searchObj, sb);
 
@@ -450,4 +2661,17 @@ public class DataManager implements ApiService {
             throw new ApiException(400, ex.getMessage(), ex);
         }
     }
+
+    /**
+     * Did the PoolMetadata connection refuse a call, anywhere in the causes
+     */
+    private static boolean needsConnection(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLFeatureNotSupportedException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,51 @@
+package com.progbits.db.dataaccess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for a DataManager operation, enabled in a recording with
+ * <code>com.progbits.db.DataManagerOperation#enabled=true</code>.
+ *
+ * @author kscarr73
+ */
+@Name("com.progbits.db.DataManagerOperation")
+@Label("DataManager Operation")
+@Category({"Database", "DataManager"})
+@Description("Pool wait, execution and mapping time of a DataManager call")
+@StackTrace(false)
+final class DataManagerEvent extends jdk.jfr.Event {
+
+    @Label("Pool")
+    String pool;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Target")
+    @Description("Table name or sql.yaml entry name")
+    String target;
+
+    @Label("Acquire Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long acquireTime;
+
+    @Label("Execute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long executeTime;
+
+    @Label("Mapping Time")
+    @Description("-1 when not measured separately")
+    @Timespan(Timespan.NANOSECONDS)
+    long mapTime;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Success")
+    boolean success;
+}
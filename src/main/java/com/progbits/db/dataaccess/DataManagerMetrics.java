@@ -0,0 +1,89 @@
+package com.progbits.db.dataaccess;
+
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Receives timings for DataManager operations and pools.
+ *
+ * <p>Register an implementation with {@link DataManager#setMetrics} or
+ * through ServiceLoader in
+ * <code>META-INF/services/com.progbits.db.dataaccess.DataManagerMetrics</code>.
+ * Every method has an empty default, so only the needed ones have to be
+ * implemented. Methods are called on the request thread and must be
+ * fast.</p>
+ *
+ * @author kscarr73
+ */
+public interface DataManagerMetrics {
+
+    /**
+     * Called when a DataManager operation finishes
+     *
+     * @param sample Timings for the operation
+     */
+    default void recordOperation(OperationSample sample) {
+    }
+
+    /**
+     * Called when a pool starts
+     *
+     * @param pool The Hikari pool name
+     * @param stats Live counters for the pool
+     */
+    default void poolStarted(String pool, PoolStats stats) {
+    }
+
+    /**
+     * Time Hikari took to hand out a connection
+     *
+     * @param pool The Hikari pool name
+     * @param nanos Wait in nanoseconds
+     */
+    default void recordConnectionAcquired(String pool, long nanos) {
+    }
+
+    /**
+     * Time a connection was out of the pool
+     *
+     * @param pool The Hikari pool name
+     * @param millis Usage in milliseconds
+     */
+    default void recordConnectionUsage(String pool, long millis) {
+    }
+
+    /**
+     * Time taken to open a new physical connection
+     *
+     * @param pool The Hikari pool name
+     * @param millis Creation time in milliseconds
+     */
+    default void recordConnectionCreated(String pool, long millis) {
+    }
+
+    /**
+     * A caller timed out waiting for a connection
+     *
+     * @param pool The Hikari pool name
+     */
+    default void recordConnectionTimeout(String pool) {
+    }
+
+    /**
+     * Timings for one DataManager operation
+     *
+     * @param pool The configured Db name
+     * @param operation The DataManager method, such as getTable
+     * @param target Table name, sql.yaml entry name, or "sql" for other SQL
+     * @param acquireNanos Time waiting for a connection
+     * @param executeNanos Time running the statement and reading rows
+     * @param mapNanos Part of executeNanos spent building records or
+     * ApiObjects, -1 when not measured separately, as when SsDbUtils or
+     * SsDbObjects build the rows
+     * @param rows Rows returned or changed, -1 if not known
+     * @param success false if the operation threw
+     */
+    record OperationSample(String pool, String operation, String target, long acquireNanos,
+        long executeNanos, long mapNanos, int rows, boolean success) {
+
+    }
+}
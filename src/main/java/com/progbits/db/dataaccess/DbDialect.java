@@ -0,0 +1,229 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Database type behind a pool, used where drivers need different handling
+ *
+ * @author kscarr73
+ */
+public enum DbDialect {
+    POSTGRESQL,
+    MARIADB,
+    MYSQL,
+    SQLSERVER,
+    ORACLE,
+    H2,
+    HSQLDB,
+    OTHER;
+
+    /**
+     * How a row limit is written
+     */
+    public enum LimitSyntax {
+        /**
+         * LIMIT n OFFSET m
+         */
+        LIMIT_OFFSET,
+        /**
+         * OFFSET m ROWS FETCH NEXT n ROWS ONLY
+         */
+        OFFSET_FETCH
+    }
+
+    /**
+     * How an insert or update in one statement is written
+     */
+    public enum UpsertStyle {
+        /**
+         * INSERT ... ON CONFLICT (key) DO UPDATE
+         */
+        ON_CONFLICT,
+        /**
+         * INSERT ... ON DUPLICATE KEY UPDATE
+         */
+        ON_DUPLICATE_KEY,
+        /**
+         * MERGE INTO ... USING
+         */
+        MERGE
+    }
+
+    /**
+     * Determine the dialect from DatabaseMetaData.getDatabaseProductName()
+     *
+     * @param productName The product name reported by the driver
+     * @return The matching dialect, OTHER if not known
+     */
+    public static DbDialect fromProductName(String productName) {
+        if (productName == null) {
+            return OTHER;
+        }
+
+        String lcl = productName.toLowerCase();
+
+        if (lcl.contains("postgres")) {
+            return POSTGRESQL;
+        } else if (lcl.contains("mariadb")) {
+            return MARIADB;
+        } else if (lcl.contains("mysql")) {
+            return MYSQL;
+        } else if (lcl.contains("sql server")) {
+            return SQLSERVER;
+        } else if (lcl.contains("oracle")) {
+            return ORACLE;
+        } else if (lcl.equals("h2")) {
+            return H2;
+        } else if (lcl.contains("hsql")) {
+            return HSQLDB;
+        } else {
+            return OTHER;
+        }
+    }
+
+    public LimitSyntax getLimitSyntax() {
+        return switch (this) {
+            case SQLSERVER, ORACLE ->
+                LimitSyntax.OFFSET_FETCH;
+            default ->
+                LimitSyntax.LIMIT_OFFSET;
+        };
+    }
+
+    public UpsertStyle getUpsertStyle() {
+        return switch (this) {
+            case POSTGRESQL ->
+                UpsertStyle.ON_CONFLICT;
+            case MARIADB, MYSQL ->
+                UpsertStyle.ON_DUPLICATE_KEY;
+            default ->
+                UpsertStyle.MERGE;
+        };
+    }
+
+    /**
+     * Does the database support row value comparison, such as
+     * <code>(a, b) &gt; (?, ?)</code>
+     *
+     * @return true if row values can be compared
+     */
+    public boolean supportsRowValues() {
+        return switch (this) {
+            case POSTGRESQL, MARIADB, MYSQL, H2, HSQLDB ->
+                true;
+            default ->
+                false;
+        };
+    }
+
+    /**
+     * Can CREATE, ALTER and DROP run inside a transaction and be rolled back.
+     * Other databases commit on each DDL statement.
+     *
+     * @return true if DDL is transactional
+     */
+    public boolean supportsTransactionalDdl() {
+        return switch (this) {
+            case POSTGRESQL, SQLSERVER ->
+                true;
+            default ->
+                false;
+        };
+    }
+
+    /**
+     * How to ask for the plan of a statement as a result set, without running
+     * it
+     *
+     * @return Text to put before the statement, null if plans are not returned
+     * as rows
+     */
+    public String explainPrefix() {
+        return switch (this) {
+            case POSTGRESQL, MARIADB, MYSQL, H2 ->
+                "EXPLAIN ";
+            default ->
+                null;
+        };
+    }
+
+    /**
+     * Append a row limit to the end of a SELECT
+     *
+     * <p>OFFSET_FETCH requires an ORDER BY in the SQL.</p>
+     *
+     * @param sb The SQL to append to
+     * @param limit Max rows to return
+     * @param offset Rows to skip
+     */
+    public void appendLimit(StringBuilder sb, int limit, int offset) {
+        if (getLimitSyntax() == LimitSyntax.OFFSET_FETCH) {
+            sb.append(" OFFSET ").append(offset).append(" ROWS FETCH NEXT ").append(limit).append(" ROWS ONLY");
+        } else {
+            sb.append(" LIMIT ").append(limit);
+
+            if (offset > 0) {
+                sb.append(" OFFSET ").append(offset);
+            }
+        }
+    }
+
+    /**
+     * Determine the dialect from a JDBC url or driver class name
+     *
+     * @param value JDBC Url or Driver Class
+     * @return The matching dialect, OTHER if not known
+     */
+    public static DbDialect fromUrl(String value) {
+        if (value == null) {
+            return OTHER;
+        }
+
+        String lcl = value.toLowerCase();
+
+        if (lcl.contains("postgresql")) {
+            return POSTGRESQL;
+        } else if (lcl.contains("mariadb")) {
+            return MARIADB;
+        } else if (lcl.contains("mysql")) {
+            return MYSQL;
+        } else if (lcl.contains("sqlserver") || lcl.contains("jtds")) {
+            return SQLSERVER;
+        } else if (lcl.contains("oracle")) {
+            return ORACLE;
+        } else if (lcl.contains(":h2:") || lcl.startsWith("org.h2")) {
+            return H2;
+        } else if (lcl.contains("hsqldb")) {
+            return HSQLDB;
+        } else {
+            return OTHER;
+        }
+    }
+
+    /**
+     * Setup a connection and statement to read rows in chunks instead of
+     * loading the entire result into memory.
+     *
+     * <p>PostgreSQL only uses a cursor when autocommit is off, and MySQL
+     * Connector/J only streams with a fetch size of Integer.MIN_VALUE.</p>
+     *
+     * @param conn Connection the statement belongs to
+     * @param stmt Statement to configure
+     * @param fetchSize Number of rows to pull per round trip
+     * @throws SQLException
+     */
+    public void prepareStreaming(Connection conn, Statement stmt, int fetchSize) throws SQLException {
+        switch (this) {
+            case POSTGRESQL -> {
+                conn.setAutoCommit(false);
+                stmt.setFetchSize(fetchSize);
+            }
+            case MYSQL ->
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            default ->
+                stmt.setFetchSize(fetchSize);
+        }
+    }
+}
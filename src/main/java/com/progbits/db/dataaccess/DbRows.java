@@ -0,0 +1,110 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Helpers to convert JDBC rows into ApiObjects
+ *
+ * @author kscarr73
+ */
+final class DbRows {
+
+    private DbRows() {
+    }
+
+    /**
+     * Convert the current row of a ResultSet into an ApiObject
+     *
+     * @param rs ResultSet positioned on a row
+     * @param meta Metadata for rs, pulled once per ResultSet
+     * @return ApiObject with one field per column label
+     * @throws SQLException
+     */
+    public static ApiObject toApiObject(ResultSet rs, ResultSetMetaData meta) throws SQLException {
+        ApiObject row = new ApiObject();
+
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String name = meta.getColumnLabel(i);
+
+            switch (meta.getColumnType(i)) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> {
+                    int val = rs.getInt(i);
+                    row.setInteger(name, rs.wasNull() ? null : val);
+                }
+                case Types.BIGINT -> {
+                    long val = rs.getLong(i);
+                    row.setLong(name, rs.wasNull() ? null : val);
+                }
+                case Types.REAL, Types.FLOAT, Types.DOUBLE -> {
+                    double val = rs.getDouble(i);
+                    row.setDouble(name, rs.wasNull() ? null : val);
+                }
+                case Types.DECIMAL, Types.NUMERIC ->
+                    row.setDecimal(name, rs.getBigDecimal(i));
+                case Types.BIT, Types.BOOLEAN -> {
+                    boolean val = rs.getBoolean(i);
+                    row.setBoolean(name, rs.wasNull() ? null : val);
+                }
+                case Types.DATE -> {
+                    // A DATE has no time zone, keep its day rather than the JVM's local midnight
+                    Date val = rs.getDate(i);
+                    row.setDateTime(name, val == null ? null : val.toLocalDate().atStartOfDay().atOffset(ZoneOffset.UTC));
+                }
+                case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> {
+                    Timestamp val = rs.getTimestamp(i);
+                    row.setDateTime(name, val == null ? null : val.toInstant().atOffset(ZoneOffset.UTC));
+                }
+                default ->
+                    row.setString(name, rs.getString(i));
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * Deep copy an ApiObject, including nested objects and lists
+     *
+     * @param obj The object to copy
+     * @return A new ApiObject, or null if obj is null
+     */
+    public static ApiObject copy(ApiObject obj) {
+        if (obj == null) {
+            return null;
+        }
+
+        ApiObject objRet = new ApiObject();
+
+        for (String field : obj.keySet()) {
+            objRet.put(field, copyValue(obj.get(field)));
+        }
+
+        return objRet;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof ApiObject obj) {
+            return copy(obj);
+        } else if (value instanceof List<?> list) {
+            List<Object> lstRet = new ArrayList<>(list.size());
+
+            for (Object item : list) {
+                lstRet.add(copyValue(item));
+            }
+
+            return lstRet;
+        } else {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.progbits.db.SsDbObjects;
+import com.progbits.db.SsDbUtils;
+
+/**
+ * Handle for operations that share one Connection and one transaction.
+ *
+ * <p>Created by {@link DataManager#inTransaction(String, TransactionWork)},
+ * only valid inside the TransactionWork. Reads see the transaction's own
+ * writes and are never served from the result cache.</p>
+ *
+ * @author kscarr73
+ */
+public class DbTransaction {
+
+    private final DataManager dataManager;
+    private final String dbName;
+    private final Connection conn;
+
+    private final Set<String> tables = new HashSet<>();
+    private final List<BatchSaver> savers = new ArrayList<>();
+    private boolean rollbackOnly = false;
+    private boolean unknownTables = false;
+
+    DbTransaction(DataManager dataManager, String dbName, Connection conn) {
+        this.dataManager = dataManager;
+        this.dbName = dbName;
+        this.conn = conn;
+    }
+
+    /**
+     * The configured Db name this transaction runs on
+     *
+     * @return The Db name
+     */
+    public String getDbName() {
+        return dbName;
+    }
+
+    /**
+     * The transaction Connection, for work DbTransaction does not cover.
+     *
+     * <p>Do NOT close or commit it.</p>
+     *
+     * @return The Connection
+     */
+    public Connection getConnection() {
+        return conn;
+    }
+
+    /**
+     * Roll the transaction back at the end instead of committing
+     */
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    /**
+     * The transaction was rolled back, remove the keys the saveAll calls set
+     */
+    void rolledBack() {
+        for (BatchSaver saver : savers) {
+            saver.clearGeneratedKeys();
+        }
+    }
+
+    Set<String> getTables() {
+        return tables;
+    }
+
+    boolean hasUnknownTables() {
+        return unknownTables;
+    }
+
+    private void addSqlTables(String sql) {
+        Set<String> found = QueryResultCache.tablesOf(sql);
+
+        if (found.isEmpty()) {
+            unknownTables = true;
+        } else {
+            tables.addAll(found);
+        }
+    }
+
+    public ApiObject getTable(String tableName, ApiObject searchObj) throws ApiException {
+        try {
+            searchObj.setString("tableName", tableName);
+
+            return SsDbObjects.find(conn, searchObj);
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public ApiObject saveIntegerKey(String tableName, String id, ApiObject objSave) throws ApiException {
+        tables.add(tableName);
+
+        try {
+            return SsDbObjects.upsertWithIntegerKey(conn, tableName, id, objSave);
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            if (ex.getMessage() != null && ex.getMessage().contains("duplicate key")) {
+                throw new ApiException(400, "Duplicate Record", ex);
+            }
+
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public ApiObject saveStringId(String tableName, String id, ApiObject objSave) throws ApiException {
+        tables.add(tableName);
+
+        try {
+            return SsDbObjects.upsertWithId(conn, tableName, id, objSave);
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        }
+    }
+
+    public ApiObject saveStringKey(String tableName, String id, ApiObject objSave) throws ApiException {
+        tables.add(tableName);
+
+        try {
+            return SsDbObjects.upsertWithStringKey(conn, tableName, id, objSave);
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Batched save of rows with a Database generated Integer key.
+     *
+     * <p>If any row fails the transaction is marked rollback only.</p>
+     *
+     * @param tableName The table to save into
+     * @param id The field that is the ID
+     * @param rows The rows to save
+     * @return ApiObject with root list of saved rows, and errors list
+     * @throws ApiException
+     * @see DataManager#saveAllIntegerKey(String, String, String, List)
+     */
+    public ApiObject saveAllIntegerKey(String tableName, String id, List<ApiObject> rows) throws ApiException {
+        return saveAll(new BatchSaver(tableName, id, BatchSaver.KeyMode.INTEGER_KEY, dataManager.getBatchSize(dbName)), rows);
+    }
+
+    /**
+     * Batched save of rows with a Database generated String key.
+     *
+     * @param tableName The table to save into
+     * @param id The field that is the ID
+     * @param rows The rows to save
+     * @return ApiObject with root list of saved rows, and errors list
+     * @throws ApiException
+     * @see #saveAllIntegerKey(String, String, List)
+     */
+    public ApiObject saveAllStringKey(String tableName, String id, List<ApiObject> rows) throws ApiException {
+        return saveAll(new BatchSaver(tableName, id, BatchSaver.KeyMode.STRING_KEY, dataManager.getBatchSize(dbName)), rows);
+    }
+
+    /**
+     * Batched save of rows with a caller supplied ID field.
+     *
+     * @param tableName The table to save into
+     * @param id The field that is the ID
+     * @param rows The rows to save
+     * @return ApiObject with root list of saved rows, and errors list
+     * @throws ApiException
+     * @see #saveAllIntegerKey(String, String, List)
+     */
+    public ApiObject saveAllStringId(String tableName, String id, List<ApiObject> rows) throws ApiException {
+        return saveAll(new BatchSaver(tableName, id, BatchSaver.KeyMode.STRING_ID, dataManager.getBatchSize(dbName)), rows);
+    }
+
+    private ApiObject saveAll(BatchSaver saver, List<ApiObject> rows) throws ApiException {
+        tables.add(saver.getTableName());
+        savers.add(saver);
+
+        ApiObject objRet = new ApiObject();
+
+        try {
+            if (!saver.save(conn, rows)) {
+                rollbackOnly = true;
+            }
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        }
+
+        objRet.setList("root", rows);
+
+        if (!saver.getErrors().isEmpty()) {
+            objRet.setList("errors", saver.getErrors());
+        }
+
+        return objRet;
+    }
+
+    public boolean deleteId(String tableName, String fieldName, Object value) throws ApiException {
+        tables.add(tableName);
+
+        try {
+            SsDbUtils.update(conn, "DELETE FROM " + tableName + " WHERE " + fieldName + "=?", new Object[]{value});
+
+            return true;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public ApiObject getSQLRows(String sql, ApiObject search) throws ApiException {
+        SqlTemplate template = dataManager.getSqlTemplate(sql);
+
+        try {
+            return SsDbUtils.querySqlAsApiObject(conn, template.getSql(), template.args(search));
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public ApiObject getSQLRows(String sql, Object[] search) throws ApiException {
+        try {
+            return SsDbUtils.querySqlAsApiObject(conn, sql, search);
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public ApiObject getSQLFirstRow(String sql, ApiObject search) throws ApiException {
+        return firstRow(getSQLRows(sql, search));
+    }
+
+    public ApiObject getSQLFirstRow(String sql, Object[] search) throws ApiException {
+        return firstRow(getSQLRows(sql, search));
+    }
+
+    private ApiObject firstRow(ApiObject objResp) {
+        if (objResp.isSet("root") && !objResp.getList("root").isEmpty()) {
+            return objResp.getObject("root[0]");
+        } else {
+            return null;
+        }
+    }
+
+    public Integer executeSQL(String sql, ApiObject search) throws ApiException {
+        addSqlTables(sql);
+
+        SqlTemplate template = dataManager.getSqlTemplate(sql);
+
+        try {
+            return SsDbUtils.updateWithCount(conn, template.getSql(), template.args(search));
+        } catch (ApiException apx) {
+            throw apx;
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public Integer executeSQL(String sql, Object[] args) throws ApiException {
+        addSqlTables(sql);
+
+        try {
+            return SsDbUtils.updateWithCount(conn, sql, args);
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public String getSqlString(String sql, Object[] args) throws ApiException {
+        try {
+            return SsDbUtils.queryForString(conn, sql, args);
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+
+    public Integer getSqlInteger(String sql, Object[] args) throws ApiException {
+        try {
+            return SsDbUtils.queryForInt(conn, sql, args);
+        } catch (SQLException sqx) {
+            throw Deadline.toApiException(sqx);
+        } catch (Exception ex) {
+            throw new ApiException(400, ex.getMessage(), ex);
+        }
+    }
+}
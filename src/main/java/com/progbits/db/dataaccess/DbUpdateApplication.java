@@ -6,19 +6,38 @@ import com.progbits.api.utils.ApiResources;
 import com.progbits.db.SsDbUtils;
 import io.github.classgraph.Resource;
 import io.github.classgraph.ResourceList;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Applies db/schemas/schema_{version}.sql files newer than the last version
+ * in db_versions.
+ *
+ * <p>Statements are read and run one at a time, with consecutive INSERT,
+ * UPDATE, DELETE and MERGE statements sent as JDBC batches. On databases with
+ * transactional DDL each version runs in one transaction and stops at the
+ * first error, so a version is either fully applied or not at all. Other
+ * databases keep going and record the errors with the version; a batch that
+ * fails there is run again one statement at a time, so only the failing
+ * statements are lost.</p>
  *
  * @author scarr
  */
@@ -39,25 +58,21 @@ public class DbUpdateApplication {
     public boolean processSql(String[] args) {
         boolean bRet = false;
 
-        ApiObject sqlFiles = pullSchemaSql();
+        DataManager db = DataManager.getInstance();
+        int batchSize = db.getBatchSize(DataManager.DEFAULT);
 
-        try (Connection conn = DataManager.getInstance().getConnection()) {
-            String currentVersion = pullDbVersion(conn);
+        Map<String, List<Resource>> sqlFiles = pullSchemaFiles();
 
-            for (var entry : sqlFiles.keySet()) {
-                if (currentVersion.compareTo(entry) < 0) {
-                    List<String> sqlEntries = sqlFiles.getStringArray(entry);
-                    StringBuilder dbErrors = new StringBuilder();
+        try (Connection conn = db.getConnection()) {
+            // A lazy pool only knows its dialect once it has started
+            DbDialect dialect = db.getDialect(DataManager.DEFAULT);
+            String currentVersion = pullDbVersion(conn);
 
-                    for (var sql : sqlEntries) {
-                        try {
-                            SsDbUtils.update(conn, sql, new Object[]{});
-                        } catch (Exception sqlEx) {
-                            dbErrors.append(sqlEx.getMessage()).append("\n");
-                        }
+            for (var entry : sqlFiles.entrySet()) {
+                if (currentVersion.compareTo(entry.getKey()) < 0) {
+                    if (!applyVersion(conn, dialect, batchSize, entry.getKey(), entry.getValue())) {
+                        return false;
                     }
-
-                    SsDbUtils.update(conn, SQL_INSERT_VERSION, new Object[]{entry, dbErrors.toString()});
                 }
             }
 
@@ -69,12 +84,147 @@ public class DbUpdateApplication {
         return bRet;
     }
 
+    /**
+     * Run every statement of a version and record it in db_versions
+     *
+     * @return false if the version was rolled back
+     */
+    private boolean applyVersion(Connection conn, DbDialect dialect, int batchSize, String version, List<Resource> files) throws SQLException {
+        boolean transactional = dialect.supportsTransactionalDdl();
+        boolean autoCommit = conn.getAutoCommit();
+        long start = System.nanoTime();
+
+        MessageDigest checksum = newChecksum();
+        StringBuilder dbErrors = new StringBuilder();
+
+        conn.setAutoCommit(false);
+
+        try (Statement stmt = conn.createStatement()) {
+            List<String> batch = new ArrayList<>();
+
+            for (var file : files) {
+                try (InputStream is = file.open(); SqlScriptReader reader = new SqlScriptReader(is)) {
+                    String sql;
+
+                    while ((sql = reader.next()) != null) {
+                        checksum.update(sql.getBytes(StandardCharsets.UTF_8));
+
+                        if (SqlScriptReader.isDml(sql)) {
+                            stmt.addBatch(sql);
+                            batch.add(sql);
+
+                            if (batch.size() == batchSize) {
+                                runBatch(conn, stmt, batch, transactional, dbErrors);
+                            }
+
+                            continue;
+                        }
+
+                        if (!batch.isEmpty()) {
+                            runBatch(conn, stmt, batch, transactional, dbErrors);
+                        }
+
+                        runStatement(conn, stmt, sql, transactional, dbErrors);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                runBatch(conn, stmt, batch, transactional, dbErrors);
+            }
+
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            try (PreparedStatement ps = conn.prepareStatement(SQL_INSERT_VERSION)) {
+                ps.setString(1, version);
+                ps.setString(2, dbErrors.length() > 1000 ? dbErrors.substring(0, 1000) : dbErrors.toString());
+                ps.setString(3, HexFormat.of().formatHex(checksum.digest()));
+                ps.setLong(4, millis);
+
+                ps.executeUpdate();
+            }
+
+            conn.commit();
+
+            log.info("Schema {} Applied in {} ms{}", version, millis, dbErrors.isEmpty() ? "" : " With Errors");
+
+            return true;
+        } catch (SQLException | IOException ex) {
+            conn.rollback();
+
+            log.error("Schema {} Rolled Back: {}", version, ex.getMessage());
+
+            return false;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void runStatement(Connection conn, Statement stmt, String sql, boolean transactional, StringBuilder dbErrors) throws SQLException {
+        try {
+            stmt.execute(sql);
+
+            if (!transactional) {
+                conn.commit();
+            }
+        } catch (SQLException sqx) {
+            if (transactional) {
+                throw sqx;
+            }
+
+            conn.rollback();
+            dbErrors.append(sqx.getMessage()).append("\n");
+        }
+    }
+
+    /**
+     * Run the statements added to stmt, batch holds the same SQL in order and
+     * is cleared
+     */
+    private void runBatch(Connection conn, Statement stmt, List<String> batch, boolean transactional, StringBuilder dbErrors) throws SQLException {
+        try {
+            stmt.executeBatch();
+
+            if (!transactional) {
+                conn.commit();
+            }
+        } catch (BatchUpdateException bux) {
+            if (transactional) {
+                throw bux;
+            }
+
+            // The rollback dropped the good statements too, run each on its own
+            conn.rollback();
+            stmt.clearBatch();
+
+            for (var sql : batch) {
+                runStatement(conn, stmt, sql, false, dbErrors);
+            }
+        } finally {
+            stmt.clearBatch();
+            batch.clear();
+        }
+    }
+
+    private static MessageDigest newChecksum() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsx) {
+            throw new IllegalStateException(nsx);
+        }
+    }
+
     private final Pattern pattern = Pattern.compile(".*schema_(.*?).sql");
 
     private final ApiResources apiResources = ApiResources.getInstance();
 
-    public ApiObject pullSchemaSql() {
-        ApiObject retSql = new ApiObject();
+    /**
+     * Find the schema files for each version, without reading them
+     *
+     * @return Files for each version, in version order
+     */
+    public Map<String, List<Resource>> pullSchemaFiles() {
+        Map<String, List<Resource>> retFiles = new LinkedHashMap<>();
 
         try {
             ResourceList resources = apiResources.getResourcesWithWildcard("db/schemas/schema_*.sql");
@@ -87,42 +237,44 @@ public class DbUpdateApplication {
                     return o1.getPath().compareTo(o2.getPath());
                 }
             });
-            
+
             for (var entry : resources) {
                 Matcher match = pattern.matcher(entry.getPath());
 
                 if (match.matches()) {
-                    String fileName = match.group(1);
+                    retFiles.computeIfAbsent(match.group(1), k -> new ArrayList<>()).add(entry);
+                }
+            }
+        } catch (ApiException apx) {
+            log.error("pullScemaSql Error: " + apx.getMessage());
+        }
 
-                    if (!retSql.containsKey(fileName)) {
-                        retSql.createStringArray(match.group(1));
-                    }
+        return retFiles;
+    }
 
-                    StringBuilder sb = new StringBuilder();
-
-                    try (InputStream is = entry.open(); BufferedReader br = new BufferedReader(new InputStreamReader(is));) {
-                        String fileLine;
-                        while ((fileLine = br.readLine()) != null) {
-                            if (fileLine.startsWith("--")) {
-                                // Ignore this line
-                            } else if (fileLine.trim().isBlank()) {
-                                retSql.getStringArray(fileName).add(sb.toString());
-                                sb = new StringBuilder();
-                            } else {
-                                sb.append(fileLine).append("\n");
-                            }
-                        }
-                    } catch (IOException ex) {
-                        log.error("File Read Failed: {}", ex.getMessage());
-                    }
+    /**
+     * Read every statement of every schema file into memory
+     *
+     * @return ApiObject with a string array of statements per version
+     * @see #pullSchemaFiles()
+     */
+    public ApiObject pullSchemaSql() {
+        ApiObject retSql = new ApiObject();
+
+        for (var entry : pullSchemaFiles().entrySet()) {
+            retSql.createStringArray(entry.getKey());
+
+            for (var file : entry.getValue()) {
+                try (InputStream is = file.open(); SqlScriptReader reader = new SqlScriptReader(is)) {
+                    String sql;
 
-                    if (!sb.isEmpty()) {
-                        retSql.getStringArray(fileName).add(sb.toString());
+                    while ((sql = reader.next()) != null) {
+                        retSql.getStringArray(entry.getKey()).add(sql);
                     }
+                } catch (IOException ex) {
+                    log.error("File Read Failed: {}", ex.getMessage());
                 }
             }
-        } catch (ApiException apx) {
-            log.error("pullScemaSql Error: " + apx.getMessage());
         }
 
         return retSql;
@@ -132,17 +284,26 @@ public class DbUpdateApplication {
                                                      CREATE TABLE db_versions (
                                                         db_version VARCHAR(50) PRIMARY KEY,
                                                         db_update TIMESTAMP DEFAULT NOW(),
-                                                        db_errors VARCHAR(1000)
+                                                        db_errors VARCHAR(1000),
+                                                        db_checksum VARCHAR(64),
+                                                        db_duration_ms BIGINT
                                                      )
                                                      """;
 
     private static final String SQL_SELECT_VERSION = """
-                                                     SELECT MAX(db_version) AS lastUpdate 
+                                                     SELECT MAX(db_version) AS lastUpdate
                                                      FROM db_versions
                                                      """;
 
+    private static final String SQL_SELECT_CHECKSUM = "SELECT db_checksum, db_duration_ms FROM db_versions WHERE 1 = 0";
+
+    private static final String[] ALTER_DB_VERSIONS = {
+        "ALTER TABLE db_versions ADD db_checksum VARCHAR(64)",
+        "ALTER TABLE db_versions ADD db_duration_ms BIGINT"
+    };
+
     private static final String SQL_INSERT_VERSION = """
-                                                     INSERT INTO db_versions (db_version, db_errors) VALUES (?, ?)
+                                                     INSERT INTO db_versions (db_version, db_errors, db_checksum, db_duration_ms) VALUES (?, ?, ?, ?)
                                                      """;
 
     private String pullDbVersion(Connection conn) throws Exception {
@@ -159,7 +320,27 @@ public class DbUpdateApplication {
             retVal = "";
         }
 
+        addVersionColumns(conn);
+
         return retVal;
     }
 
+    /**
+     * Add the checksum and duration columns to a db_versions table made by
+     * an older version
+     */
+    private void addVersionColumns(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeQuery(SQL_SELECT_CHECKSUM).close();
+        } catch (SQLException sqx) {
+            log.info("Adding db_checksum and db_duration_ms to db_versions");
+
+            try (Statement stmt = conn.createStatement()) {
+                for (var sql : ALTER_DB_VERSIONS) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,115 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import com.progbits.api.exception.ApiException;
+
+/**
+ * Bounds how long the DataManager calls made by the current thread may take,
+ * waiting for a connection included.
+ *
+ * <pre>
+ * try (Deadline deadline = db.openDeadline(250)) {
+ *     ApiObject rows = db.getSQLRows(dbName, sql, search);
+ * }
+ * </pre>
+ *
+ * <p>Statements made while a deadline is open get a query timeout of the
+ * time left, and are cancelled when the deadline passes or the calling thread
+ * is interrupted. A call that runs out of time fails with
+ * {@link #DEADLINE_EXCEEDED}. Nested deadlines never extend the one around
+ * them, and the async DataManager calls keep the deadline that started
+ * them.</p>
+ *
+ * @author kscarr73
+ */
+public final class Deadline implements AutoCloseable {
+
+    /**
+     * ApiException code when a call runs out of time
+     */
+    public static final int DEADLINE_EXCEEDED = 504;
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private final Deadline parent;
+
+    Deadline(long timeoutNanos) {
+        this.parent = current.get();
+
+        long at = System.nanoTime() + timeoutNanos;
+
+        this.deadlineNanos = parent != null && parent.deadlineNanos - at < 0 ? parent.deadlineNanos : at;
+
+        current.set(this);
+    }
+
+    /**
+     * The innermost open deadline of this thread
+     *
+     * @return The deadline, null if none is open
+     */
+    static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Make deadline the current deadline of this thread, for work handed to
+     * another thread
+     *
+     * @param deadline The deadline to use, may be null
+     * @return The deadline it replaced
+     */
+    static Deadline enter(Deadline deadline) {
+        Deadline previous = current.get();
+
+        if (deadline == null) {
+            current.remove();
+        } else {
+            current.set(deadline);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Turn a failed statement into an ApiException, DEADLINE_EXCEEDED for a
+     * timeout, otherwise 500
+     */
+    static ApiException toApiException(SQLException sqx) {
+        if (sqx instanceof SQLTimeoutException) {
+            return new ApiException(DEADLINE_EXCEEDED, sqx.getMessage(), sqx);
+        }
+
+        return new ApiException(500, sqx.getMessage(), sqx);
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * @return Milliseconds left, 0 once passed
+     */
+    public long getRemainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos()));
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    @Override
+    public void close() {
+        if (current.get() == this) {
+            enter(parent);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.progbits.db.dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection wrapper that holds its statements to a Deadline
+ *
+ * <p>Each statement gets a query timeout of the whole seconds left and is
+ * watched by the StatementWatchdog, and the connection gets a network timeout
+ * a little past the deadline, so a dead socket does not hold the caller. A
+ * statement that fails after the deadline passed, or after the watchdog
+ * cancelled it, fails with a SQLTimeoutException.</p>
+ *
+ * @author kscarr73
+ */
+final class DeadlineConnection implements InvocationHandler {
+
+    // The watchdog cancels first, the network timeout is only for a dead socket
+    private static final long NETWORK_GRACE_MILLIS = 1000;
+
+    private final Connection conn;
+    private final Deadline deadline;
+    private final StatementWatchdog watchdog;
+    private final List<StatementWatchdog.Watch> watches = new CopyOnWriteArrayList<>();
+
+    private DeadlineConnection(Connection conn, Deadline deadline, StatementWatchdog watchdog) {
+        this.conn = conn;
+        this.deadline = deadline;
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * @param conn The pool connection
+     * @param deadline The deadline of the call
+     * @param watchdog Cancels the statements
+     * @param executor Runs the driver network timeout
+     */
+    static Connection wrap(Connection conn, Deadline deadline, StatementWatchdog watchdog, Executor executor) {
+        try {
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos()) + NETWORK_GRACE_MILLIS;
+
+            conn.setNetworkTimeout(executor, (int) Math.min(Integer.MAX_VALUE, millis));
+        } catch (SQLException | AbstractMethodError ex) {
+            // Not supported by the driver, the statement timeout and watchdog still apply
+        }
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new DeadlineConnection(conn, deadline, watchdog));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+            for (var watch : watches) {
+                watchdog.unwatch(watch);
+            }
+
+            watches.clear();
+        }
+
+        Object result;
+
+        try {
+            result = method.invoke(conn, args);
+        } catch (InvocationTargetException itx) {
+            throw itx.getCause();
+        }
+
+        if (result instanceof Statement stmt) {
+            return watchStatement(proxy, stmt, method.getReturnType());
+        }
+
+        return result;
+    }
+
+    private Object watchStatement(Object connProxy, Statement stmt, Class<?> type) throws SQLException {
+        long remaining = deadline.remainingNanos();
+
+        if (remaining <= 0) {
+            stmt.close();
+
+            throw new SQLTimeoutException("Deadline Exceeded");
+        }
+
+        // Whole seconds, rounded up, the watchdog cancels on time
+        stmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toSeconds(remaining - 1) + 1));
+
+        StatementWatchdog.Watch watch = watchdog.watch(stmt, deadline.getDeadlineNanos());
+
+        watches.add(watch);
+
+        Class<?> iface = CallableStatement.class.isAssignableFrom(type) ? CallableStatement.class
+            : PreparedStatement.class.isAssignableFrom(type) ? PreparedStatement.class : Statement.class;
+
+        return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{iface},
+            (stmtProxy, method, args) -> {
+                if ("getConnection".equals(method.getName())) {
+                    return connProxy;
+                }
+
+                if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                    watchdog.unwatch(watch);
+                    watches.remove(watch);
+                }
+
+                try {
+                    return method.invoke(stmt, args);
+                } catch (InvocationTargetException itx) {
+                    if (itx.getCause() instanceof SQLException sqx && !(sqx instanceof SQLTimeoutException)
+                        && (watch.isCancelled() || deadline.isExpired())) {
+                        throw new SQLTimeoutException((deadline.isExpired() ? "Deadline Exceeded: " : "Statement Cancelled: ")
+                            + sqx.getMessage(), sqx.getSQLState(), sqx);
+                    }
+
+                    throw itx.getCause();
+                }
+            });
+    }
+}
@@ -0,0 +1,19 @@
+package com.progbits.db.dataaccess;
+
+/**
+ * File format written by the DataManager export methods
+ *
+ * @author kscarr73
+ */
+public enum ExportFormat {
+    /**
+     * A header line of column labels, then one line per row. Fields are
+     * separated by commas and quoted when they hold a comma, quote or line
+     * break. Null is an empty field.
+     */
+    CSV,
+    /**
+     * One JSON object per line, keyed by column label
+     */
+    JSON_LINES
+}
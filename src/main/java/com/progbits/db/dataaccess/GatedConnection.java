@@ -0,0 +1,127 @@
+package com.progbits.db.dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection wrapper that returns its PoolGate permit when closed
+ *
+ * <p>When the gate is adaptive or has a breaker, statements are wrapped too,
+ * so connection errors and timeouts are reported with the permit.</p>
+ *
+ * <p>The time reported is the wait for the pool connection plus the time
+ * spent in calls on the connection and its statements, not how long the
+ * caller kept it open, so a slow stream consumer or work done inside a
+ * transaction does not look like a slow database.</p>
+ *
+ * @author kscarr73
+ */
+final class GatedConnection implements InvocationHandler {
+
+    private final Connection conn;
+    private final PoolGate gate;
+    private final long acquireNanos;
+    private final boolean probe;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    private volatile boolean failed = false;
+
+    private GatedConnection(Connection conn, PoolGate gate, long startNanos, boolean probe) {
+        this.conn = conn;
+        this.gate = gate;
+        this.acquireNanos = System.nanoTime() - startNanos;
+        this.probe = probe;
+    }
+
+    static Connection wrap(Connection conn, PoolGate gate) {
+        return wrap(conn, gate, System.nanoTime(), false);
+    }
+
+    /**
+     * @param conn The pool connection
+     * @param gate The gate the permit came from
+     * @param startNanos When the connection was asked for
+     * @param probe The value PoolGate.acquire returned
+     */
+    static Connection wrap(Connection conn, PoolGate gate, long startNanos, boolean probe) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new GatedConnection(conn, gate, startNanos, probe));
+    }
+
+    /**
+     * Is the error one that says the database is down or too slow, rather
+     * than a problem with the statement
+     */
+    static boolean isConnectionFailure(SQLException sqx) {
+        if (sqx instanceof SQLTimeoutException || sqx instanceof SQLTransientConnectionException
+            || sqx instanceof SQLNonTransientConnectionException || sqx instanceof SQLRecoverableException) {
+            return true;
+        }
+
+        String state = sqx.getSQLState();
+
+        // 08 connection exception, 57014 query canceled, HYT00 timeout
+        return state != null && (state.startsWith("08") || "57014".equals(state) || "HYT00".equals(state));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+            try {
+                conn.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    gate.release(acquireNanos + busyNanos.get(), failed, probe);
+                }
+            }
+
+            return null;
+        }
+
+        Object result = call(conn, method, args);
+
+        if (gate.isTracked() && result instanceof Statement stmt) {
+            return wrapStatement(proxy, stmt, method.getReturnType());
+        }
+
+        return result;
+    }
+
+    private Object call(Object target, Method method, Object[] args) throws Throwable {
+        long callStart = System.nanoTime();
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException itx) {
+            if (itx.getCause() instanceof SQLException sqx && isConnectionFailure(sqx)) {
+                failed = true;
+            }
+
+            throw itx.getCause();
+        } finally {
+            busyNanos.addAndGet(System.nanoTime() - callStart);
+        }
+    }
+
+    private Object wrapStatement(Object connProxy, Statement stmt, Class<?> type) {
+        Class<?> iface = CallableStatement.class.isAssignableFrom(type) ? CallableStatement.class
+            : PreparedStatement.class.isAssignableFrom(type) ? PreparedStatement.class : Statement.class;
+
+        return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{iface},
+            (stmtProxy, method, args) -> "getConnection".equals(method.getName()) ? connProxy : call(stmt, method, args));
+    }
+}
@@ -0,0 +1,68 @@
+package com.progbits.db.dataaccess;
+
+import java.util.function.Supplier;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Sends Hikari pool metrics to the current DataManagerMetrics
+ *
+ * @author kscarr73
+ */
+final class HikariMetricsBridge implements MetricsTrackerFactory {
+
+    private final Supplier<DataManagerMetrics> metrics;
+
+    HikariMetricsBridge(Supplier<DataManagerMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        DataManagerMetrics lclMetrics = metrics.get();
+
+        if (lclMetrics != null) {
+            lclMetrics.poolStarted(poolName, poolStats);
+        }
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                DataManagerMetrics lcl = metrics.get();
+
+                if (lcl != null) {
+                    lcl.recordConnectionAcquired(poolName, elapsedAcquiredNanos);
+                }
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                DataManagerMetrics lcl = metrics.get();
+
+                if (lcl != null) {
+                    lcl.recordConnectionUsage(poolName, elapsedBorrowedMillis);
+                }
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                DataManagerMetrics lcl = metrics.get();
+
+                if (lcl != null) {
+                    lcl.recordConnectionCreated(poolName, connectionCreatedMillis);
+                }
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                DataManagerMetrics lcl = metrics.get();
+
+                if (lcl != null) {
+                    lcl.recordConnectionTimeout(poolName);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,422 @@
+package com.progbits.db.dataaccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Seek based paging for a table.
+ *
+ * <p>Rows are ordered by the sort keys, and each page starts after the keys
+ * of the last row of the previous page, so every page is an index range
+ * scan no matter how deep it is. The keys of the last row are returned as an
+ * opaque token.</p>
+ *
+ * @author kscarr73
+ */
+final class KeysetPage {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private static final byte TOKEN_VERSION = 1;
+
+    private final String tableName;
+    private final List<String> keys = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+    private final int pageSize;
+
+    /**
+     * @param tableName The table to page through
+     * @param sortKeys Column names, each optionally followed by ASC or DESC
+     * @param pageSize Rows per page
+     * @throws ApiException 400 if a name is not a plain identifier
+     */
+    KeysetPage(String tableName, List<String> sortKeys, int pageSize) throws ApiException {
+        if (sortKeys == null || sortKeys.isEmpty()) {
+            throw new ApiException(400, "Sort Keys Required");
+        }
+
+        if (pageSize < 1) {
+            throw new ApiException(400, "Page Size Must Be Greater Than 0");
+        }
+
+        this.tableName = checkIdentifier(tableName);
+        this.pageSize = pageSize;
+
+        for (var sortKey : sortKeys) {
+            String[] parts = sortKey.trim().split("\\s+");
+
+            if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("ASC") && !parts[1].equalsIgnoreCase("DESC"))) {
+                throw new ApiException(400, "Invalid Sort Key: " + sortKey);
+            }
+
+            keys.add(checkIdentifier(parts[0]));
+            descending.add(parts.length == 2 && parts[1].equalsIgnoreCase("DESC"));
+        }
+    }
+
+    static String checkIdentifier(String name) throws ApiException {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new ApiException(400, "Invalid Name: " + name);
+        }
+
+        return name;
+    }
+
+    /**
+     * Build the SELECT for a page
+     *
+     * @param dialect Dialect of the pool
+     * @param searchObj Equality filters, a List value becomes IN
+     * @param after Key values decoded from the token, null for the first page
+     * @param args Receives the values to bind, in order
+     * @return The SQL
+     * @throws ApiException 400 if a filter name is not a plain identifier
+     */
+    String buildSql(DbDialect dialect, ApiObject searchObj, Object[] after, List<Object> args) throws ApiException {
+        StringBuilder sb = new StringBuilder("SELECT * FROM ").append(tableName);
+        String sep = appendFilters(sb, searchObj, args);
+
+        if (after != null) {
+            sb.append(sep);
+            appendSeek(dialect, sb, after, args);
+        }
+
+        sb.append(" ORDER BY ");
+
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(keys.get(i)).append(descending.get(i) ? " DESC" : " ASC");
+        }
+
+        // One extra row tells us if there is another page
+        dialect.appendLimit(sb, pageSize + 1, 0);
+
+        return sb.toString();
+    }
+
+    /**
+     * Append a WHERE with an equality filter for each field of searchObj
+     *
+     * @param sb The SELECT to append to
+     * @param searchObj Equality filters, a List value becomes IN. May be null.
+     * @param args Receives the values to bind, in order
+     * @return " AND " if a WHERE was added, otherwise " WHERE "
+     * @throws ApiException 400 if a filter name is not a plain identifier
+     */
+    static String appendFilters(StringBuilder sb, ApiObject searchObj, List<Object> args) throws ApiException {
+        return appendFilters(sb, searchObj, args, Set.of("tableName"));
+    }
+
+    /**
+     * Append a WHERE with an equality filter for each field of searchObj not
+     * in skip
+     *
+     * @param sb The SELECT to append to
+     * @param searchObj Equality filters, a List value becomes IN. May be null.
+     * @param args Receives the values to bind, in order
+     * @param skip Fields that are not filters
+     * @return " AND " if a WHERE was added, otherwise " WHERE "
+     * @throws ApiException 400 if a filter name is not a plain identifier
+     */
+    static String appendFilters(StringBuilder sb, ApiObject searchObj, List<Object> args, Set<String> skip) throws ApiException {
+        String sep = " WHERE ";
+
+        if (searchObj != null) {
+            for (var field : searchObj.keySet()) {
+                if (skip.contains(field)) {
+                    continue;
+                }
+
+                Object value = searchObj.get(field);
+
+                sb.append(sep).append(checkIdentifier(field));
+                sep = " AND ";
+
+                if (value == null) {
+                    sb.append(" IS NULL");
+                } else if (value instanceof List<?> lstValues) {
+                    if (lstValues.isEmpty()) {
+                        throw new ApiException(400, "Empty List For Field: " + field);
+                    }
+
+                    sb.append(" IN (");
+
+                    for (int i = 0; i < lstValues.size(); i++) {
+                        sb.append(i == 0 ? "?" : ",?");
+                        args.add(lstValues.get(i));
+                    }
+
+                    sb.append(")");
+                } else {
+                    sb.append(" = ?");
+                    args.add(value);
+                }
+            }
+        }
+
+        return sep;
+    }
+
+    private boolean sameDirection() {
+        return !descending.contains(!descending.get(0));
+    }
+
+    /**
+     * (k1, k2) &gt; (?, ?) when the dialect supports row values and every key
+     * sorts the same way, otherwise (k1 &gt; ?) OR (k1 = ? AND k2 &gt; ?)
+     */
+    private void appendSeek(DbDialect dialect, StringBuilder sb, Object[] after, List<Object> args) {
+        if (keys.size() == 1 || (dialect.supportsRowValues() && sameDirection())) {
+            sb.append(keys.size() == 1 ? "" : "(").append(String.join(", ", keys)).append(keys.size() == 1 ? "" : ")");
+            sb.append(descending.get(0) ? " < " : " > ");
+            sb.append(keys.size() == 1 ? "?" : "(" + "?, ".repeat(keys.size() - 1) + "?)");
+
+            for (var value : after) {
+                args.add(value);
+            }
+
+            return;
+        }
+
+        sb.append("(");
+
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                sb.append(" OR ");
+            }
+
+            sb.append("(");
+
+            for (int j = 0; j < i; j++) {
+                sb.append(keys.get(j)).append(" = ? AND ");
+                args.add(after[j]);
+            }
+
+            sb.append(keys.get(i)).append(descending.get(i) ? " < ?" : " > ?");
+            args.add(after[i]);
+
+            sb.append(")");
+        }
+
+        sb.append(")");
+    }
+
+    /**
+     * Run the page query
+     *
+     * @param ps Statement with every argument bound
+     * @param timer Timer for the operation, may be null
+     * @return ApiObject with a root list of rows, and next set to the token
+     * for the following page when there is one
+     * @throws SQLException
+     */
+    ApiObject read(PreparedStatement ps, OperationTimer timer) throws SQLException {
+        ApiObject objRet = new ApiObject();
+        List<ApiObject> rows = objRet.createList("root");
+        Object[] lastKeys = null;
+        long mapNanos = 0;
+
+        try (ResultSet rs = ps.executeQuery()) {
+            ResultSetMetaData meta = rs.getMetaData();
+
+            while (rs.next()) {
+                if (rows.size() == pageSize) {
+                    objRet.setString("next", encode(lastKeys));
+                    break;
+                }
+
+                long start = System.nanoTime();
+
+                rows.add(DbRows.toApiObject(rs, meta));
+
+                mapNanos += System.nanoTime() - start;
+
+                if (rows.size() == pageSize) {
+                    lastKeys = new Object[keys.size()];
+
+                    for (int i = 0; i < keys.size(); i++) {
+                        lastKeys[i] = rs.getObject(keys.get(i).substring(keys.get(i).indexOf('.') + 1));
+                    }
+                }
+            }
+        }
+
+        if (timer != null) {
+            timer.mapped(mapNanos);
+        }
+
+        return objRet;
+    }
+
+    /**
+     * Turn the key values of the last row into a token
+     */
+    String encode(Object[] values) throws SQLException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TOKEN_VERSION);
+            out.writeInt(shape());
+            out.writeByte(values.length);
+
+            for (var value : values) {
+                writeValue(out, value);
+            }
+        } catch (IOException iex) {
+            throw new SQLException("Page Token Failed: " + iex.getMessage(), iex);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Read the key values from a token
+     *
+     * @param token Token from the next field of the previous page
+     * @return Key values, null if token is null or empty
+     * @throws ApiException 400 if the token is not valid for these sort keys
+     */
+    Object[] decode(String token) throws ApiException {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != TOKEN_VERSION || in.readInt() != shape() || in.readByte() != keys.size()) {
+                throw new ApiException(400, "Page Token Does Not Match Sort Keys");
+            }
+
+            Object[] values = new Object[keys.size()];
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readValue(in);
+            }
+
+            return values;
+        } catch (IOException | RuntimeException ex) {
+            throw new ApiException(400, "Invalid Page Token", ex);
+        }
+    }
+
+    /**
+     * Ties a token to the table and sort keys it was made for
+     */
+    private int shape() {
+        return (tableName + ":" + keys + ":" + descending).toLowerCase().hashCode();
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case null ->
+                out.writeByte('N');
+            case Integer iValue -> {
+                out.writeByte('I');
+                out.writeInt(iValue);
+            }
+            case Long lValue -> {
+                out.writeByte('L');
+                out.writeLong(lValue);
+            }
+            case Short sValue -> {
+                out.writeByte('I');
+                out.writeInt(sValue);
+            }
+            case Double dValue -> {
+                out.writeByte('F');
+                out.writeDouble(dValue);
+            }
+            case Boolean bValue -> {
+                out.writeByte('B');
+                out.writeBoolean(bValue);
+            }
+            case BigDecimal decValue -> {
+                out.writeByte('D');
+                out.writeUTF(decValue.toString());
+            }
+            case Timestamp tsValue -> {
+                out.writeByte('T');
+                out.writeUTF(tsValue.toInstant().toString());
+            }
+            case java.sql.Date dtValue -> {
+                out.writeByte('d');
+                out.writeUTF(dtValue.toString());
+            }
+            case LocalDate ldValue -> {
+                out.writeByte('d');
+                out.writeUTF(ldValue.toString());
+            }
+            case LocalDateTime ldtValue -> {
+                out.writeByte('l');
+                out.writeUTF(ldtValue.toString());
+            }
+            case OffsetDateTime odtValue -> {
+                out.writeByte('O');
+                out.writeUTF(odtValue.toString());
+            }
+            case UUID uValue -> {
+                out.writeByte('U');
+                out.writeUTF(uValue.toString());
+            }
+            default -> {
+                out.writeByte('S');
+                out.writeUTF(value.toString());
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        return switch (in.readByte()) {
+            case 'N' ->
+                null;
+            case 'I' ->
+                in.readInt();
+            case 'L' ->
+                in.readLong();
+            case 'F' ->
+                in.readDouble();
+            case 'B' ->
+                in.readBoolean();
+            case 'D' ->
+                new BigDecimal(in.readUTF());
+            case 'T' ->
+                Timestamp.from(Instant.parse(in.readUTF()));
+            case 'd' ->
+                java.sql.Date.valueOf(in.readUTF());
+            case 'l' ->
+                LocalDateTime.parse(in.readUTF());
+            case 'O' ->
+                OffsetDateTime.parse(in.readUTF());
+            case 'U' ->
+                UUID.fromString(in.readUTF());
+            case 'S' ->
+                in.readUTF();
+            default ->
+                throw new IOException("Unknown Value Type");
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.util.List;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Times the phases of one DataManager operation and reports them to the
+ * metrics SPI, JFR and the slow statement log when closed.
+ *
+ * @author kscarr73
+ */
+final class OperationTimer implements AutoCloseable {
+
+    private final DataManagerMetrics metrics;
+    private final QueryDiagnostics diagnostics;
+    private final DataManagerEvent event;
+    private final String pool;
+    private final String operation;
+    private final String target;
+    private final Deadline deadline;
+
+    private final long start;
+    private long mark;
+
+    private long acquireNanos = 0;
+    private long executeNanos = 0;
+    // -1 until a path that builds its own rows reports mapping time
+    private long mapNanos = -1;
+    private int rows = -1;
+    private boolean success = false;
+
+    private String sql = null;
+    private Object params = null;
+    private DataManager.StatementBinder binder = null;
+
+    /**
+     * @param timeoutNanos Time the operation may take, a Deadline is open
+     * until close, 0 for none
+     */
+    OperationTimer(DataManagerMetrics metrics, QueryDiagnostics diagnostics, String pool, String operation, String target, long timeoutNanos) {
+        this.metrics = metrics;
+        this.diagnostics = diagnostics;
+        this.pool = pool;
+        this.operation = operation;
+        this.target = target;
+        this.deadline = timeoutNanos > 0 ? new Deadline(timeoutNanos) : null;
+
+        this.event = new DataManagerEvent();
+        this.event.begin();
+
+        this.start = System.nanoTime();
+        this.mark = start;
+    }
+
+    /**
+     * Describe the statement for the slow statement log and QueryScope
+     *
+     * @param sql SQL sent to the driver, null if not known
+     * @param params The bound ApiObject or Object[]
+     * @param binder Binds params to the SQL again, null if it can not be
+     * explained
+     * @return this
+     */
+    OperationTimer describe(String sql, Object params, DataManager.StatementBinder binder) {
+        this.sql = sql;
+        this.params = params;
+        this.binder = binder;
+
+        return this;
+    }
+
+    /**
+     * Mark the end of the connection wait
+     *
+     * @param conn The connection that was acquired
+     * @return conn
+     */
+    Connection acquired(Connection conn) {
+        long now = System.nanoTime();
+
+        acquireNanos = now - mark;
+        mark = now;
+
+        return conn;
+    }
+
+    /**
+     * Add time spent building ApiObjects from rows
+     *
+     * @param nanos Mapping time
+     */
+    void mapped(long nanos) {
+        mapNanos = Math.max(mapNanos, 0) + nanos;
+    }
+
+    /**
+     * Mark the operation successful
+     *
+     * @param count Rows returned or changed, -1 if not known
+     */
+    void done(int count) {
+        long now = System.nanoTime();
+
+        executeNanos = now - mark;
+        mark = now;
+        rows = count;
+        success = true;
+    }
+
+    /**
+     * Mark the operation successful, counting the root rows
+     *
+     * @param result Result with a root list
+     * @return result
+     */
+    ApiObject done(ApiObject result) {
+        List<ApiObject> lstRows = result == null ? null : result.getList("root");
+
+        done(lstRows == null ? -1 : lstRows.size());
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (deadline != null) {
+            deadline.close();
+        }
+
+        if (!success) {
+            executeNanos = System.nanoTime() - mark;
+        }
+
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.pool = pool;
+            event.operation = operation;
+            event.target = target;
+            event.acquireTime = acquireNanos;
+            event.executeTime = executeNanos;
+            event.mapTime = mapNanos;
+            event.rows = rows;
+            event.success = success;
+
+            event.commit();
+        }
+
+        if (metrics != null) {
+            metrics.recordOperation(new DataManagerMetrics.OperationSample(pool, operation, target,
+                acquireNanos, executeNanos, mapNanos, rows, success));
+        }
+
+        if (success && diagnostics != null && diagnostics.isActive(pool)) {
+            diagnostics.record(pool, operation, target, sql, params, binder, System.nanoTime() - start, rows);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.progbits.db.dataaccess;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Limits the callers waiting on a pool.
+ *
+ * <p>Permits are handed out in arrival order, and callers past the queue
+ * limit fail at once instead of piling up inside
+ * HikariDataSource.getConnection().</p>
+ *
+ * <p>With DB_ADAPTIVE the number of permits follows the database: it grows by
+ * one each time a full limit of connections is used without trouble, and
+ * shrinks by 10% when connection use takes more than twice its long run
+ * average or fails, never below a quarter of the pool. A slow database then
+ * gets fewer callers at once, and the rest wait in the queue or fail with a
+ * 503 instead of holding threads inside the pool.</p>
+ *
+ * @author kscarr73
+ */
+final class PoolGate {
+
+    private static final double SHORT_WEIGHT = 0.2;
+    private static final double LONG_WEIGHT = 0.01;
+    private static final double DECREASE = 0.9;
+    private static final double TOLERANCE = 2.0;
+
+    private final String name;
+    private final int maxPermits;
+    private final int minPermits;
+    private final int maxQueue;
+    private final long timeoutMillis;
+    private final boolean adaptive;
+    private final CircuitBreaker breaker;
+
+    // Fair, so permits go out in arrival order
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+
+    private int inUse = 0;
+    private double limit;
+    private double shortNanos = 0;
+    private double longNanos = 0;
+    private long lastDecrease = 0;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    PoolGate(String name, int maxPermits, int maxQueue, long timeoutMillis) {
+        this(name, maxPermits, maxQueue, timeoutMillis, false, null);
+    }
+
+    /**
+     * @param name Pool name for messages
+     * @param maxPermits Connections in the pool
+     * @param maxQueue Callers allowed to wait
+     * @param timeoutMillis Longest wait for a permit
+     * @param adaptive true to adjust the permits to connection latency
+     * @param breaker Breaker for the pool, null for none
+     */
+    PoolGate(String name, int maxPermits, int maxQueue, long timeoutMillis, boolean adaptive, CircuitBreaker breaker) {
+        this.name = name;
+        this.maxPermits = maxPermits;
+        this.minPermits = Math.max(1, maxPermits / 4);
+        this.maxQueue = maxQueue;
+        this.timeoutMillis = timeoutMillis;
+        this.adaptive = adaptive;
+        this.breaker = breaker;
+        this.limit = maxPermits;
+    }
+
+    /**
+     * Does release need the outcome of each connection use
+     */
+    boolean isTracked() {
+        return adaptive || breaker != null;
+    }
+
+    /**
+     * Wait for a permit
+     *
+     * @return true if this call is the probe of a half open breaker, pass it
+     * to release
+     * @throws ApiException 512 if the breaker is open, 503 if the queue is
+     * full, 511 if no permit is available within the pool connection timeout
+     */
+    boolean acquire() throws ApiException {
+        return acquire(Long.MAX_VALUE);
+    }
+
+    /**
+     * Wait for a permit, no longer than maxWaitNanos
+     *
+     * @param maxWaitNanos Time left of the caller's Deadline
+     * @return true if this call is the probe of a half open breaker, pass it
+     * to release
+     * @throws ApiException 512 if the breaker is open, 503 if the queue is
+     * full, 504 if the deadline passes first, 511 if no permit is available
+     * within the pool connection timeout
+     */
+    boolean acquire(long maxWaitNanos) throws ApiException {
+        boolean probe = breaker != null && breaker.allow();
+
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+
+            if (probe) {
+                breaker.record(0, true, true);
+            }
+
+            throw new ApiException(503, "Connection Queue Full: " + name);
+        }
+
+        long poolNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        try {
+            if (!awaitPermit(Math.min(poolNanos, maxWaitNanos))) {
+                if (maxWaitNanos < poolNanos) {
+                    // The caller ran out of time, that says nothing about the pool
+                    if (probe) {
+                        breaker.cancelProbe();
+                    }
+
+                    throw new ApiException(Deadline.DEADLINE_EXCEEDED, "Deadline Exceeded Waiting For Connection: " + name);
+                }
+
+                if (breaker != null) {
+                    breaker.record(poolNanos, true, probe);
+                }
+
+                throw new ApiException(511, "Connection Wait Timeout: " + name);
+            }
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+
+            if (probe) {
+                breaker.cancelProbe();
+            }
+
+            throw new ApiException(511, "Connection Wait Interrupted: " + name, iex);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        return probe;
+    }
+
+    /**
+     * Take a permit only if one is free right now
+     *
+     * @return true if a permit was taken
+     */
+    boolean tryAcquire() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+
+        try {
+            if (inUse < (int) limit) {
+                inUse++;
+                return true;
+            }
+
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitPermit(long nanos) throws InterruptedException {
+        lock.lockInterruptibly();
+
+        try {
+            while (inUse >= (int) limit) {
+                if (nanos <= 0) {
+                    return false;
+                }
+
+                nanos = available.awaitNanos(nanos);
+            }
+
+            inUse++;
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inUse() {
+        lock.lock();
+
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        release(0, false, false);
+    }
+
+    /**
+     * Return a permit without recording a use, the caller gave up before
+     * reaching the database
+     *
+     * @param probe The value acquire returned
+     */
+    void cancel(boolean probe) {
+        if (probe) {
+            breaker.cancelProbe();
+        }
+
+        lock.lock();
+
+        try {
+            inUse--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return a permit with how the connection use went
+     *
+     * @param holdNanos Time waiting for the pool connection plus time spent
+     * in calls on it and its statements
+     * @param failed true if getting or using the connection failed with a
+     * connection error or timeout
+     * @param probe The value acquire returned
+     */
+    void release(long holdNanos, boolean failed, boolean probe) {
+        if (breaker != null) {
+            breaker.record(holdNanos, failed, probe);
+        }
+
+        lock.lock();
+
+        try {
+            inUse--;
+
+            if (adaptive) {
+                adjust(holdNanos, failed);
+            }
+
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * AIMD on the permit limit, called holding the lock
+     */
+    private void adjust(long holdNanos, boolean failed) {
+        if (!failed) {
+            if (longNanos == 0) {
+                shortNanos = holdNanos;
+                longNanos = holdNanos;
+            } else {
+                shortNanos += (holdNanos - shortNanos) * SHORT_WEIGHT;
+                longNanos += (holdNanos - longNanos) * LONG_WEIGHT;
+            }
+        }
+
+        if (failed || shortNanos > longNanos * TOLERANCE) {
+            long now = System.nanoTime();
+
+            // At most one decrease per average use, one slow period is one signal
+            if (now - lastDecrease > longNanos) {
+                limit = Math.max(minPermits, limit * DECREASE);
+                lastDecrease = now;
+            }
+        } else if (inUse + 1 >= limit / 2) {
+            // Only grow while the permits are being used
+            double oldLimit = limit;
+
+            limit = Math.min(maxPermits, limit + 1 / limit);
+
+            if ((int) limit > (int) oldLimit) {
+                available.signal();
+            }
+        }
+    }
+
+    /**
+     * Gate counters
+     *
+     * @return ApiObject with maxPermits, limit, inUse, waiting and maxQueue,
+     * and breaker when one is set
+     */
+    ApiObject getStats() {
+        ApiObject objRet = new ApiObject();
+
+        lock.lock();
+
+        try {
+            objRet.setInteger("maxPermits", maxPermits);
+            objRet.setInteger("limit", (int) limit);
+            objRet.setInteger("inUse", inUse);
+        } finally {
+            lock.unlock();
+        }
+
+        objRet.setInteger("waiting", waiting.get());
+        objRet.setInteger("maxQueue", maxQueue);
+
+        if (breaker != null) {
+            objRet.setObject("breaker", breaker.getStats());
+        }
+
+        return objRet;
+    }
+}
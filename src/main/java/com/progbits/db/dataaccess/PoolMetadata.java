@@ -0,0 +1,205 @@
+package com.progbits.db.dataaccess;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Database details for a pool, read once when the pool starts.
+ *
+ * <p>SQL building code that only needs to look at DatabaseMetaData can use
+ * {@link #getConnection()}, which answers from the cached values without
+ * borrowing a pooled connection.</p>
+ *
+ * @author kscarr73
+ */
+public final class PoolMetadata {
+
+    private final DbDialect dialect;
+    private final String productName;
+    private final String productVersion;
+    private final int majorVersion;
+    private final String driverName;
+    private final String identifierQuote;
+    private final String catalog;
+    private final String schema;
+
+    private final Map<String, Object> values;
+    private final DatabaseMetaData metaProxy;
+    private final Connection metaConnection;
+
+    private volatile boolean connectionNeeded = false;
+
+    private PoolMetadata(Connection conn) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+
+        this.values = snapshot(meta);
+        this.productName = meta.getDatabaseProductName();
+        this.productVersion = meta.getDatabaseProductVersion();
+        this.majorVersion = meta.getDatabaseMajorVersion();
+        this.driverName = meta.getDriverName();
+        this.identifierQuote = meta.getIdentifierQuoteString();
+        this.catalog = conn.getCatalog();
+        this.schema = conn.getSchema();
+
+        DbDialect lclDialect = DbDialect.fromProductName(productName);
+
+        this.dialect = lclDialect == DbDialect.OTHER ? DbDialect.fromUrl(meta.getURL()) : lclDialect;
+
+        this.metaProxy = (DatabaseMetaData) Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(),
+            new Class<?>[]{DatabaseMetaData.class}, this::invokeMetaData);
+
+        this.metaConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, this::invokeConnection);
+    }
+
+    private Object invokeMetaData(Object proxy, Method method, Object[] args) throws SQLException {
+        if (method.getName().equals("getConnection")) {
+            return metaConnection;
+        } else if (args == null && values.containsKey(method.getName())) {
+            return values.get(method.getName());
+        }
+
+        return objectMethod(proxy, method, args);
+    }
+
+    private Object invokeConnection(Object proxy, Method method, Object[] args) throws SQLException {
+        return switch (method.getName()) {
+            case "getMetaData" ->
+                metaProxy;
+            case "getCatalog" ->
+                catalog;
+            case "getSchema" ->
+                schema;
+            case "isClosed" ->
+                false;
+            case "close" ->
+                null;
+            default ->
+                objectMethod(proxy, method, args);
+        };
+    }
+
+    /**
+     * Read the metadata from a connection
+     *
+     * @param conn A live connection from the pool
+     * @return The cached metadata
+     * @throws SQLException
+     */
+    static PoolMetadata read(Connection conn) throws SQLException {
+        return new PoolMetadata(conn);
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) throws SQLException {
+        return switch (method.getName()) {
+            case "hashCode" ->
+                System.identityHashCode(proxy);
+            case "equals" ->
+                proxy == args[0];
+            case "toString" ->
+                "PoolMetadata Connection";
+            default ->
+                throw new SQLFeatureNotSupportedException("Not Available Without A Connection: " + method.getName());
+        };
+    }
+
+    /**
+     * Call every no argument DatabaseMetaData method that returns a String,
+     * int or boolean
+     */
+    private static Map<String, Object> snapshot(DatabaseMetaData meta) {
+        Map<String, Object> mapRet = new HashMap<>();
+
+        for (Method method : DatabaseMetaData.class.getMethods()) {
+            Class<?> type = method.getReturnType();
+
+            if (method.getParameterCount() == 0 && !Modifier.isStatic(method.getModifiers())
+                && (type == String.class || type == int.class || type == boolean.class)) {
+                try {
+                    mapRet.put(method.getName(), method.invoke(meta));
+                } catch (IllegalAccessException | InvocationTargetException | RuntimeException ex) {
+                    // Not supported by this driver, calls will throw instead
+                }
+            }
+        }
+
+        return mapRet;
+    }
+
+    /**
+     * A Connection that only answers getMetaData(), getCatalog() and
+     * getSchema() from the cached values, every other call throws
+     * SQLFeatureNotSupportedException.
+     *
+     * @return The metadata only Connection
+     */
+    public Connection getConnection() {
+        return metaConnection;
+    }
+
+    /**
+     * Did SQL building code ask {@link #getConnection()} for something only a
+     * live connection of this pool can answer
+     *
+     * @return true to use a pooled connection instead
+     */
+    boolean isConnectionNeeded() {
+        return connectionNeeded;
+    }
+
+    void setConnectionNeeded() {
+        connectionNeeded = true;
+    }
+
+    public DbDialect getDialect() {
+        return dialect;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getProductVersion() {
+        return productVersion;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public String getDriverName() {
+        return driverName;
+    }
+
+    /**
+     * The string used to quote identifiers, a space if quoting is not
+     * supported
+     *
+     * @return The quote string
+     */
+    public String getIdentifierQuote() {
+        return identifierQuote;
+    }
+
+    /**
+     * Quote an identifier for this database
+     *
+     * @param name The table or column name
+     * @return The quoted name
+     */
+    public String quote(String name) {
+        if (identifierQuote == null || identifierQuote.isBlank()) {
+            return name;
+        }
+
+        return identifierQuote + name.replace(identifierQuote, identifierQuote + identifierQuote) + identifierQuote;
+    }
+}
@@ -0,0 +1,167 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Gets a pool ready for traffic before the first request.
+ *
+ * <ol>
+ * <li>Opens minimumIdle connections</li>
+ * <li>Prepares every sql.yaml statement for the pool on each connection,
+ * which also checks the SQL against the database</li>
+ * <li>Runs the sql.yaml entries that have a warmup field</li>
+ * </ol>
+ *
+ * @author kscarr73
+ */
+final class PoolWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolWarmer.class);
+
+    /**
+     * A sql.yaml statement that runs on the pool
+     *
+     * @param name The sql.yaml entry name
+     * @param sql The SQL, with :{field} values
+     * @param warmupParams Values to run the SQL with during warm-up, null to
+     * only prepare it
+     */
+    record Entry(String name, String sql, ApiObject warmupParams) {
+
+    }
+
+    private final DataManager dataManager;
+    private final String dbName;
+    private final HikariDataSource pool;
+    private final List<Entry> entries;
+    private final int runs;
+
+    PoolWarmer(DataManager dataManager, String dbName, HikariDataSource pool, List<Entry> entries, int runs) {
+        this.dataManager = dataManager;
+        this.dbName = dbName;
+        this.pool = pool;
+        this.entries = entries;
+        this.runs = runs;
+    }
+
+    /**
+     * Warm the pool
+     *
+     * @return ApiObject with connections, statements, queries, millis and a
+     * failed list of {name, message}
+     */
+    ApiObject warmUp() {
+        long start = System.nanoTime();
+        ApiObject report = new ApiObject();
+        List<ApiObject> failed = report.createList("failed");
+        List<Connection> conns = new ArrayList<>();
+
+        try {
+            // Holding the connections makes Hikari open minimumIdle of them now
+            for (int i = 0; i < Math.max(1, pool.getMinimumIdle()); i++) {
+                conns.add(pool.getConnection());
+            }
+        } catch (SQLException sqx) {
+            log.warn("Db {} Warm-up Opened {} Connections: {}", dbName, conns.size(), sqx.getMessage());
+        }
+
+        int prepared = 0;
+
+        try {
+            for (var entry : entries) {
+                SqlTemplate template = dataManager.getSqlTemplate(entry.sql());
+                boolean ok = true;
+
+                for (var conn : conns) {
+                    try {
+                        prepare(conn, template.getSql());
+                    } catch (SQLException sqx) {
+                        log.error("sql.yaml {} Failed On Db {}: {}", entry.name(), dbName, sqx.getMessage());
+
+                        addFailure(failed, entry.name(), sqx.getMessage());
+                        ok = false;
+                        break;
+                    }
+                }
+
+                if (ok) {
+                    prepared++;
+                }
+            }
+        } finally {
+            for (var conn : conns) {
+                try {
+                    conn.close();
+                } catch (SQLException sqx) {
+                    log.warn("Connection Close Failed: {}", sqx.getMessage());
+                }
+            }
+        }
+
+        int queries = 0;
+
+        for (var entry : entries) {
+            if (entry.warmupParams() == null) {
+                continue;
+            }
+
+            try {
+                for (int i = 0; i < runs; i++) {
+                    dataManager.getSQLRows(dbName, entry.sql(), entry.warmupParams());
+                    queries++;
+                }
+            } catch (ApiException apx) {
+                log.error("sql.yaml {} Warm-up Query Failed On Db {}: {}", entry.name(), dbName, apx.getMessage());
+
+                addFailure(failed, entry.name(), apx.getMessage());
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        report.setInteger("connections", conns.size());
+        report.setInteger("statements", prepared);
+        report.setInteger("queries", queries);
+        report.setLong("millis", millis);
+
+        log.info("Db {} Warmed Up in {} ms: {} Connections, {} Statements, {} Queries, {} Failed",
+            dbName, millis, conns.size(), prepared, queries, failed.size());
+
+        return report;
+    }
+
+    /**
+     * Prepare the SQL and ask for its parameters, which makes drivers that
+     * prepare lazily send the SQL to the database
+     */
+    private static void prepare(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            try {
+                ps.getParameterMetaData();
+            } catch (SQLFeatureNotSupportedException sfx) {
+                // Driver checks the SQL on first execute
+            }
+        }
+    }
+
+    private static void addFailure(List<ApiObject> failed, String name, String message) {
+        ApiObject failure = new ApiObject();
+
+        failure.setString("name", name);
+        failure.setString("message", message);
+
+        failed.add(failure);
+    }
+}
@@ -0,0 +1,188 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Slow statement log and statement counts for {@link QueryScope}.
+ *
+ * <p>Statements slower than DB_SLOWQUERY_MS are logged with the shape of the
+ * bound values, never the values. DB_SLOWQUERY_EXPLAIN of those are also
+ * explained on another connection and the plan logged.</p>
+ *
+ * @author kscarr73
+ */
+final class QueryDiagnostics {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryDiagnostics.class);
+
+    /**
+     * Slow statement settings of a pool
+     *
+     * @param slowNanos Log statements taking at least this long
+     * @param explainRate Fraction of slow statements to explain, 0 to 1
+     */
+    record Settings(long slowNanos, double explainRate) {
+
+    }
+
+    private final DataManager dataManager;
+    private final Executor executor;
+    private final Map<String, Settings> settings = new ConcurrentHashMap<>();
+
+    // One plan at a time, a slow database does not need more load
+    private final Semaphore explaining = new Semaphore(1);
+
+    QueryDiagnostics(DataManager dataManager, Executor executor) {
+        this.dataManager = dataManager;
+        this.executor = executor;
+    }
+
+    void configure(String pool, Settings poolSettings) {
+        if (poolSettings == null) {
+            settings.remove(pool);
+        } else {
+            settings.put(pool, poolSettings);
+        }
+    }
+
+    /**
+     * Is there anything to record for this pool on this thread
+     */
+    boolean isActive(String pool) {
+        return settings.containsKey(pool) || QueryScope.current() != null;
+    }
+
+    /**
+     * Record a finished statement
+     *
+     * @param pool The pool it ran on
+     * @param operation The DataManager method
+     * @param target Table or sql.yaml entry name
+     * @param sql SQL sent to the driver, null if not known
+     * @param params The bound ApiObject or Object[]
+     * @param binder Binds params again to explain the SQL, may be null
+     * @param nanos Total time
+     * @param rows Rows returned or changed, -1 if not known
+     */
+    void record(String pool, String operation, String target, String sql, Object params,
+        DataManager.StatementBinder binder, long nanos, int rows) {
+        String shape = shapeOf(params);
+        QueryScope scope = QueryScope.current();
+
+        if (scope != null) {
+            scope.record(operation + " " + (sql == null ? target : sql.replaceAll("\\s+", " ").trim()) + " " + shape, nanos);
+        }
+
+        Settings poolSettings = settings.get(pool);
+
+        if (poolSettings == null || nanos < poolSettings.slowNanos()) {
+            return;
+        }
+
+        log.warn("Slow Statement on Db {}: {} ms {} {} Rows: {} Params: {}{}", pool, nanos / 1_000_000,
+            operation, target, rows, shape, sql == null ? "" : "\n" + sql);
+
+        if (sql != null && binder != null && poolSettings.explainRate() > 0
+            && ThreadLocalRandom.current().nextDouble() < poolSettings.explainRate()) {
+            explain(pool, target, sql, binder);
+        }
+    }
+
+    private void explain(String pool, String target, String sql, DataManager.StatementBinder binder) {
+        String prefix = dataManager.getDialect(pool).explainPrefix();
+
+        if (prefix == null || !explaining.tryAcquire()) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try (Connection conn = dataManager.getReadConnection(pool);
+                    PreparedStatement ps = conn.prepareStatement(prefix + sql)) {
+                    binder.bind(ps);
+
+                    StringBuilder plan = new StringBuilder();
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        int columns = rs.getMetaData().getColumnCount();
+
+                        while (rs.next()) {
+                            for (int i = 1; i <= columns; i++) {
+                                plan.append(i == 1 ? "" : " | ").append(rs.getString(i));
+                            }
+
+                            plan.append("\n");
+                        }
+                    }
+
+                    log.warn("Slow Statement Plan on Db {} for {}:\n{}", pool, target, plan);
+                } catch (Exception ex) {
+                    log.info("Slow Statement Explain Failed on Db {} for {}: {}", pool, target, ex.getMessage());
+                } finally {
+                    explaining.release();
+                }
+            });
+        } catch (RuntimeException rex) {
+            explaining.release();
+        }
+    }
+
+    /**
+     * Names and types of the bound values, the values themselves may be
+     * private
+     */
+    static String shapeOf(Object params) {
+        StringBuilder sb = new StringBuilder();
+
+        switch (params) {
+            case null ->
+                sb.append("none");
+            case ApiObject objParams -> {
+                sb.append("{");
+
+                for (var key : objParams.keySet()) {
+                    sb.append(sb.length() == 1 ? "" : ", ").append(key).append(": ").append(typeOf(objParams.get(key)));
+                }
+
+                sb.append("}");
+            }
+            case Object[] args -> {
+                sb.append("[");
+
+                for (int i = 0; i < args.length; i++) {
+                    sb.append(i == 0 ? "" : ", ").append(typeOf(args[i]));
+                }
+
+                sb.append("]");
+            }
+            default ->
+                sb.append(typeOf(params));
+        }
+
+        return sb.toString();
+    }
+
+    private static String typeOf(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof List) {
+            // Sizes change from call to call, the fingerprint should not
+            return "List";
+        }
+
+        return value.getClass().getSimpleName();
+    }
+}
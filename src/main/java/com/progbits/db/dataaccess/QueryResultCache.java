@@ -0,0 +1,244 @@
+package com.progbits.db.dataaccess;
+
+import java.lang.reflect.Array;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * LRU cache of query results for a single pool, with a TTL per entry and
+ * invalidation by table name.
+ *
+ * <p>Results are copied on the way in and on the way out, so callers can
+ * modify what they get back.</p>
+ *
+ * @author kscarr73
+ */
+final class QueryResultCache {
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+        "\\b(?:FROM|JOIN|UPDATE|INTO)\\s+([A-Za-z0-9_.\"`\\[\\]]+)", Pattern.CASE_INSENSITIVE);
+
+    private record Entry(ApiObject value, long expires, Set<String> tables) {
+
+    }
+
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private long generation = 0;
+
+    QueryResultCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > QueryResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Return a copy of the cached result, or null if missing or expired
+     *
+     * @param key Key from {@link #key(String, Object)}
+     * @return Copy of the cached result or null
+     */
+    ApiObject get(String key) {
+        Entry entry;
+
+        synchronized (this) {
+            entry = entries.get(key);
+
+            if (entry != null && entry.expires() < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.increment();
+
+            return null;
+        }
+
+        hits.increment();
+
+        return DbRows.copy(entry.value());
+    }
+
+    /**
+     * Current invalidation generation, read before running the query that
+     * will be passed to {@link #put}
+     *
+     * @return The generation
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Store a copy of a result, unless an invalidation happened while the
+     * query was running.
+     *
+     * @param key Key from {@link #key(String, Object)}
+     * @param startGeneration Generation read before the query ran
+     * @param value The result to cache
+     * @param ttlMillis How long the entry stays valid
+     * @param tables Tables the result was read from
+     */
+    void put(String key, long startGeneration, ApiObject value, long ttlMillis, Set<String> tables) {
+        ApiObject copy = DbRows.copy(value);
+
+        synchronized (this) {
+            if (startGeneration == generation) {
+                entries.put(key, new Entry(copy, System.currentTimeMillis() + ttlMillis, tables));
+            }
+        }
+    }
+
+    /**
+     * Remove every entry read from a table
+     *
+     * @param table Table name, as returned by {@link #normalize(String)}
+     */
+    synchronized void invalidate(String table) {
+        generation++;
+
+        entries.values().removeIf(entry -> entry.tables().isEmpty() || entry.tables().contains(table));
+    }
+
+    /**
+     * Remove every entry
+     */
+    synchronized void clear() {
+        generation++;
+
+        entries.clear();
+    }
+
+    /**
+     * Cache counters
+     *
+     * @return ApiObject with size, maxSize, hits and misses
+     */
+    ApiObject getStats() {
+        ApiObject objRet = new ApiObject();
+
+        synchronized (this) {
+            objRet.setInteger("size", entries.size());
+        }
+
+        objRet.setInteger("maxSize", maxSize);
+        objRet.setLong("hits", hits.sum());
+        objRet.setLong("misses", misses.sum());
+
+        return objRet;
+    }
+
+    /**
+     * Build a cache key from the SQL or table name and the bound values.
+     *
+     * <p>Text is written with its length in front and every value with a
+     * tag for its type, so values holding separators, or the same text in a
+     * different type, can not give another query's key.</p>
+     *
+     * @param sqlOrTable SQL text or table name
+     * @param params ApiObject or Object[] of bound values
+     * @return The key
+     */
+    static String key(String sqlOrTable, Object params) {
+        StringBuilder sb = new StringBuilder(sqlOrTable.length() + 32);
+
+        appendText(sb, sqlOrTable);
+        appendValue(sb, params);
+
+        return sb.toString();
+    }
+
+    private static void appendText(StringBuilder sb, String text) {
+        sb.append(text.length()).append(':').append(text);
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append('n');
+        } else if (value instanceof ApiObject obj) {
+            sb.append('o').append(obj.keySet().size()).append('{');
+
+            for (String field : obj.keySet()) {
+                appendText(sb, field);
+                appendValue(sb, obj.get(field));
+            }
+
+            sb.append('}');
+        } else if (value instanceof List<?> list) {
+            sb.append('l').append(list.size()).append('[');
+
+            for (Object item : list) {
+                appendValue(sb, item);
+            }
+
+            sb.append(']');
+        } else if (value.getClass().isArray()) {
+            int len = Array.getLength(value);
+
+            sb.append('a').append(len).append('[');
+
+            for (int i = 0; i < len; i++) {
+                appendValue(sb, Array.get(value, i));
+            }
+
+            sb.append(']');
+        } else if (value instanceof String str) {
+            sb.append('s');
+            appendText(sb, str);
+        } else {
+            sb.append('v');
+            appendText(sb, value.getClass().getName());
+            appendText(sb, value.toString());
+        }
+    }
+
+    /**
+     * Find the tables a SQL statement reads or writes
+     *
+     * @param sql The SQL to scan
+     * @return Normalized table names, empty if none could be found
+     */
+    static Set<String> tablesOf(String sql) {
+        Set<String> tables = new HashSet<>();
+
+        Matcher match = TABLE_PATTERN.matcher(sql);
+
+        while (match.find()) {
+            tables.add(normalize(match.group(1)));
+        }
+
+        return tables;
+    }
+
+    /**
+     * Lower case a table name and remove quoting and schema
+     *
+     * @param table The table name
+     * @return Normalized table name
+     */
+    static String normalize(String table) {
+        String lcl = table.replaceAll("[\"`\\[\\]]", "").toLowerCase();
+
+        int dot = lcl.lastIndexOf('.');
+
+        return dot < 0 ? lcl : lcl.substring(dot + 1);
+    }
+}
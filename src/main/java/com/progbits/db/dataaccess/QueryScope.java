@@ -0,0 +1,142 @@
+package com.progbits.db.dataaccess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Counts the statements run by the current thread, such as during one
+ * request, to find the same statement run over and over in a loop.
+ *
+ * <pre>
+ * try (QueryScope scope = db.openQueryScope("GET /orders")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>Statements are grouped by fingerprint: the operation, the SQL or table,
+ * and the names and types of the bound values. A warning is logged the first
+ * time a fingerprint runs more than the threshold, usually a query in a loop
+ * that could be one query with an IN list or a join. The async DataManager
+ * calls count toward the scope that started them.</p>
+ *
+ * @author kscarr73
+ */
+public final class QueryScope implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryScope.class);
+
+    private static final ThreadLocal<QueryScope> current = new ThreadLocal<>();
+
+    private final String name;
+    private final int threshold;
+    private final QueryScope parent;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    private static final class Fingerprint {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong nanos = new AtomicLong();
+    }
+
+    QueryScope(String name, int threshold) {
+        this.name = name;
+        this.threshold = threshold;
+        this.parent = current.get();
+
+        current.set(this);
+    }
+
+    /**
+     * The innermost open scope of this thread
+     *
+     * @return The scope, null if none is open
+     */
+    static QueryScope current() {
+        return current.get();
+    }
+
+    /**
+     * Make scope the current scope of this thread, for work handed to
+     * another thread
+     *
+     * @param scope The scope to use, may be null
+     * @return The scope it replaced
+     */
+    static QueryScope enter(QueryScope scope) {
+        QueryScope previous = current.get();
+
+        if (scope == null) {
+            current.remove();
+        } else {
+            current.set(scope);
+        }
+
+        return previous;
+    }
+
+    void record(String fingerprint, long nanos) {
+        Fingerprint fp = fingerprints.computeIfAbsent(fingerprint, k -> new Fingerprint());
+
+        fp.nanos.addAndGet(nanos);
+
+        if (fp.count.incrementAndGet() == threshold + 1) {
+            log.warn("Repeated Statement in {}: more than {} runs of {}", name, threshold, fingerprint);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Statements run so far, most run first
+     *
+     * @return ApiObject with name, threshold, statements and a fingerprints
+     * list of {fingerprint, count, millis, repeated}
+     */
+    public ApiObject getReport() {
+        ApiObject objRet = new ApiObject();
+        List<Map.Entry<String, Fingerprint>> entries = new ArrayList<>(fingerprints.entrySet());
+
+        entries.sort((o1, o2) -> Integer.compare(o2.getValue().count.get(), o1.getValue().count.get()));
+
+        objRet.setString("name", name);
+        objRet.setInteger("threshold", threshold);
+
+        List<ApiObject> lstPrints = objRet.createList("fingerprints");
+        int statements = 0;
+
+        for (var entry : entries) {
+            ApiObject objPrint = new ApiObject();
+            int count = entry.getValue().count.get();
+
+            objPrint.setString("fingerprint", entry.getKey());
+            objPrint.setInteger("count", count);
+            objPrint.setLong("millis", entry.getValue().nanos.get() / 1_000_000);
+            objPrint.setBoolean("repeated", count > threshold);
+
+            lstPrints.add(objPrint);
+            statements += count;
+        }
+
+        objRet.setInteger("statements", statements);
+
+        return objRet;
+    }
+
+    @Override
+    public void close() {
+        if (current.get() == this) {
+            enter(parent);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.progbits.db.dataaccess;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Shares one run of a read between callers asking for the same thing at the
+ * same time.
+ *
+ * <p>The first caller for a key runs the query, callers arriving while it
+ * runs wait for it and get their own copy of the result instead of taking
+ * another connection. A write on the pool stops later callers from joining a
+ * read that started before it, so a caller always sees its own writes.</p>
+ *
+ * @author kscarr73
+ */
+final class ReadCoalescer {
+
+    interface Query {
+
+        ApiObject run() throws ApiException;
+    }
+
+    private static final class Flight {
+
+        private final CompletableFuture<ApiObject> result = new CompletableFuture<>();
+        private final long generation;
+        private int waiters = 0;
+
+        Flight(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Run the query, or wait for the same query already running
+     *
+     * @param key Pool unique key of the SQL or table and the bound values
+     * @param query The read
+     * @return The result, a copy when it was shared
+     * @throws ApiException The failure of the shared run
+     */
+    ApiObject run(String key, Query query) throws ApiException {
+        long current = generation.get();
+        Flight mine = new Flight(current);
+
+        // Waiters are counted under the map lock, so the count is final once the flight is removed
+        Flight flight = flights.compute(key, (k, running) -> {
+            if (running != null && running.generation == current) {
+                running.waiters++;
+
+                return running;
+            }
+
+            return mine;
+        });
+
+        if (flight != mine) {
+            shared.increment();
+
+            return DbRows.copy(await(flight));
+        }
+
+        executions.increment();
+
+        ApiObject objRet;
+
+        try {
+            objRet = query.run();
+        } catch (Throwable ex) {
+            // Anything thrown must end the flight, or its waiters and later callers hang
+            flights.remove(key, mine);
+            mine.result.completeExceptionally(ex);
+
+            throw ex;
+        }
+
+        flights.remove(key, mine);
+
+        if (mine.waiters == 0) {
+            return objRet;
+        }
+
+        // Waiters copy from the original while this caller gets its own
+        mine.result.complete(objRet);
+
+        return DbRows.copy(objRet);
+    }
+
+    /**
+     * Stop new callers joining reads already running, call on every write
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return ApiObject with executions, shared and inFlight
+     */
+    ApiObject getStats() {
+        ApiObject objRet = new ApiObject();
+
+        objRet.setLong("executions", executions.sum());
+        objRet.setLong("shared", shared.sum());
+        objRet.setInteger("inFlight", flights.size());
+
+        return objRet;
+    }
+
+    /**
+     * Wait for the shared run, no longer than the caller's Deadline
+     */
+    private static ApiObject await(Flight flight) throws ApiException {
+        Deadline deadline = Deadline.current();
+
+        try {
+            if (deadline == null) {
+                return flight.result.get();
+            }
+
+            return flight.result.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException tex) {
+            throw new ApiException(Deadline.DEADLINE_EXCEEDED, "Deadline Exceeded Waiting For Shared Read", tex);
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+
+            throw new ApiException(500, "Interrupted Waiting For Shared Read", iex);
+        } catch (ExecutionException eex) {
+            if (eex.getCause() instanceof ApiException apx) {
+                throw apx;
+            }
+
+            throw new ApiException(500, eex.getCause().getMessage(), eex.getCause());
+        }
+    }
+}
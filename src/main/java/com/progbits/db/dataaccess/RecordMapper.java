@@ -0,0 +1,291 @@
+package com.progbits.db.dataaccess;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.progbits.api.exception.ApiException;
+
+/**
+ * Builds Java records straight from the current row of a ResultSet.
+ *
+ * <p>A mapper is made once for each record type and query shape, the column
+ * labels and types. Each record component is matched to a column by name,
+ * ignoring case and underscores, so customer_id fills customerId. The mapper
+ * is a MethodHandle tree: the canonical constructor with a reader for each
+ * component bound to its column index. Primitive components are read with
+ * getInt, getLong and the like and passed to the constructor without
+ * boxing.</p>
+ *
+ * <p>Components are read as:</p>
+ * <ul>
+ * <li>int, long, double, float, short, byte, boolean: the primitive getter,
+ * null is 0 or false</li>
+ * <li>Integer, Long, Double, Boolean: the primitive getter, null stays
+ * null</li>
+ * <li>String, BigDecimal: getString, getBigDecimal</li>
+ * <li>OffsetDateTime, Instant: getTimestamp in UTC, like DbRows, a DATE
+ * column is midnight UTC of its day</li>
+ * <li>LocalDateTime, LocalDate: getTimestamp, getDate</li>
+ * <li>Enums: getString and valueOf</li>
+ * <li>Everything else: getObject with the component type</li>
+ * </ul>
+ *
+ * @author kscarr73
+ */
+final class RecordMapper<T> {
+
+    private static final int MAX_MAPPERS = 500;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Map<Shape, RecordMapper<?>> mappers = new ConcurrentHashMap<>();
+
+    private record Shape(Class<?> type, String columns) {
+
+    }
+
+    private final Class<T> type;
+    private final MethodHandle handle;
+
+    private RecordMapper(Class<T> type, MethodHandle handle) {
+        this.type = type;
+        this.handle = handle;
+    }
+
+    /**
+     * Return the mapper for a record type and the columns of a ResultSet,
+     * making it on first use
+     *
+     * @param type The record class
+     * @param meta Metadata of the ResultSet
+     * @return The mapper
+     * @throws ApiException 400 if a component has no column or the record
+     * constructor can not be used
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Record> RecordMapper<T> of(Class<T> type, ResultSetMetaData meta) throws SQLException, ApiException {
+        StringBuilder columns = new StringBuilder();
+
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.append(meta.getColumnLabel(i)).append(':').append(meta.getColumnType(i)).append(',');
+        }
+
+        Shape shape = new Shape(type, columns.toString());
+        RecordMapper<?> mapper = mappers.get(shape);
+
+        if (mapper != null) {
+            return (RecordMapper<T>) mapper;
+        }
+
+        RecordMapper<T> newMapper = new RecordMapper<>(type, build(type, meta));
+
+        if (mappers.size() >= MAX_MAPPERS) {
+            Iterator<Shape> keys = mappers.keySet().iterator();
+
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+
+        mappers.put(shape, newMapper);
+
+        return newMapper;
+    }
+
+    /**
+     * Build a record from the current row
+     *
+     * @param rs ResultSet positioned on a row
+     * @return The record
+     * @throws SQLException
+     */
+    T map(ResultSet rs) throws SQLException {
+        try {
+            return type.cast(handle.invokeExact(rs));
+        } catch (SQLException | RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new SQLException("Record Mapping Failed: " + type.getName(), ex);
+        }
+    }
+
+    private static MethodHandle build(Class<?> type, ResultSetMetaData meta) throws SQLException, ApiException {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] types = new Class<?>[components.length];
+        MethodHandle[] readers = new MethodHandle[components.length];
+
+        for (int i = 0; i < components.length; i++) {
+            int col = findColumn(meta, components[i].getName(), type);
+
+            types[i] = components[i].getType();
+            readers[i] = reader(types[i], col, meta.getColumnType(col) == Types.DATE);
+        }
+
+        MethodHandle ctor;
+
+        try {
+            Constructor<?> canonical = type.getDeclaredConstructor(types);
+
+            canonical.setAccessible(true);
+
+            ctor = LOOKUP.unreflectConstructor(canonical);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            throw new ApiException(400, "Record Constructor Not Accessible: " + type.getName(), ex);
+        }
+
+        // (ResultSet, ResultSet, ...) -> T, then every argument is the one ResultSet
+        MethodHandle filled = MethodHandles.filterArguments(ctor, 0, readers);
+        MethodHandle mapper = MethodHandles.permuteArguments(filled,
+            MethodType.methodType(type, ResultSet.class), new int[components.length]);
+
+        return mapper.asType(MethodType.methodType(Object.class, ResultSet.class));
+    }
+
+    private static int findColumn(ResultSetMetaData meta, String name, Class<?> type) throws SQLException, ApiException {
+        String plain = plainName(name);
+        int match = 0;
+
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String label = meta.getColumnLabel(i);
+
+            if (label.equals(name)) {
+                return i;
+            } else if (match == 0 && plainName(label).equals(plain)) {
+                match = i;
+            }
+        }
+
+        if (match == 0) {
+            throw new ApiException(400, "No Column For " + type.getSimpleName() + "." + name);
+        }
+
+        return match;
+    }
+
+    private static String plainName(String name) {
+        return name.replace("_", "").toLowerCase();
+    }
+
+    /**
+     * (ResultSet) -> component type, reading column col
+     */
+    private static MethodHandle reader(Class<?> component, int col, boolean date) throws ApiException {
+        try {
+            MethodHandle mh;
+
+            if (component.isPrimitive()) {
+                String getter = "get" + Character.toUpperCase(component.getName().charAt(0)) + component.getName().substring(1);
+
+                mh = LOOKUP.findVirtual(ResultSet.class, getter, MethodType.methodType(component, int.class));
+            } else if (component == Integer.class || component == Long.class || component == Double.class
+                || component == Boolean.class || component == OffsetDateTime.class || component == Instant.class
+                || component == LocalDateTime.class || component == LocalDate.class) {
+                // A DATE has no time zone, keep its day rather than the JVM's local midnight
+                String prefix = date && (component == OffsetDateTime.class || component == Instant.class) ? "readDate" : "read";
+
+                mh = LOOKUP.findStatic(RecordMapper.class, prefix + component.getSimpleName(),
+                    MethodType.methodType(component, ResultSet.class, int.class));
+            } else if (component == String.class) {
+                mh = LOOKUP.findVirtual(ResultSet.class, "getString", MethodType.methodType(String.class, int.class));
+            } else if (component == BigDecimal.class) {
+                mh = LOOKUP.findVirtual(ResultSet.class, "getBigDecimal", MethodType.methodType(BigDecimal.class, int.class));
+            } else if (component.isEnum()) {
+                mh = MethodHandles.insertArguments(LOOKUP.findStatic(RecordMapper.class, "readEnum",
+                    MethodType.methodType(Enum.class, ResultSet.class, int.class, Class.class)), 2, component);
+            } else {
+                mh = MethodHandles.insertArguments(LOOKUP.findVirtual(ResultSet.class, "getObject",
+                    MethodType.methodType(Object.class, int.class, Class.class)), 2, component);
+            }
+
+            return MethodHandles.insertArguments(mh, 1, col).asType(MethodType.methodType(component, ResultSet.class));
+        } catch (ReflectiveOperationException ex) {
+            throw new ApiException(400, "No Reader For " + component.getName(), ex);
+        }
+    }
+
+    private static Integer readInteger(ResultSet rs, int col) throws SQLException {
+        int val = rs.getInt(col);
+
+        return rs.wasNull() ? null : val;
+    }
+
+    private static Long readLong(ResultSet rs, int col) throws SQLException {
+        long val = rs.getLong(col);
+
+        return rs.wasNull() ? null : val;
+    }
+
+    private static Double readDouble(ResultSet rs, int col) throws SQLException {
+        double val = rs.getDouble(col);
+
+        return rs.wasNull() ? null : val;
+    }
+
+    private static Boolean readBoolean(ResultSet rs, int col) throws SQLException {
+        boolean val = rs.getBoolean(col);
+
+        return rs.wasNull() ? null : val;
+    }
+
+    private static OffsetDateTime readOffsetDateTime(ResultSet rs, int col) throws SQLException {
+        Timestamp val = rs.getTimestamp(col);
+
+        return val == null ? null : val.toInstant().atOffset(ZoneOffset.UTC);
+    }
+
+    private static Instant readInstant(ResultSet rs, int col) throws SQLException {
+        Timestamp val = rs.getTimestamp(col);
+
+        return val == null ? null : val.toInstant();
+    }
+
+    private static OffsetDateTime readDateOffsetDateTime(ResultSet rs, int col) throws SQLException {
+        Date val = rs.getDate(col);
+
+        return val == null ? null : val.toLocalDate().atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+
+    private static Instant readDateInstant(ResultSet rs, int col) throws SQLException {
+        Date val = rs.getDate(col);
+
+        return val == null ? null : val.toLocalDate().atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime readLocalDateTime(ResultSet rs, int col) throws SQLException {
+        Timestamp val = rs.getTimestamp(col);
+
+        return val == null ? null : val.toLocalDateTime();
+    }
+
+    private static LocalDate readLocalDate(ResultSet rs, int col) throws SQLException {
+        Date val = rs.getDate(col);
+
+        return val == null ? null : val.toLocalDate();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Enum readEnum(ResultSet rs, int col, Class type) throws SQLException {
+        String val = rs.getString(col);
+
+        return val == null ? null : Enum.valueOf(type, val);
+    }
+}
@@ -0,0 +1,129 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.model.ApiObject;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Read replica pools for a named database.
+ *
+ * <p>Picks a replica round robin or by fewest connections in use. A replica
+ * with no free permit is skipped, and one that fails to hand out a
+ * connection is skipped for a short time, so callers fall back to the
+ * primary.</p>
+ *
+ * @author kscarr73
+ */
+final class ReplicaSet {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSet.class);
+
+    private static final long RETRY_MILLIS = 5000;
+
+    /**
+     * How a replica is chosen for each read
+     */
+    enum Strategy {
+        ROUNDROBIN,
+        LEASTBUSY
+    }
+
+    private final String name;
+    private final Strategy strategy;
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<PoolGate> gates = new ArrayList<>();
+    private final AtomicLongArray failedUntil;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaSet(String name, Strategy strategy, List<HikariDataSource> replicaPools) {
+        this.name = name;
+        this.strategy = strategy;
+
+        for (var pool : replicaPools) {
+            pools.add(pool);
+            gates.add(new PoolGate(pool.getPoolName(), pool.getMaximumPoolSize(), 0, 0));
+        }
+
+        this.failedUntil = new AtomicLongArray(pools.size());
+    }
+
+    boolean isEmpty() {
+        return pools.isEmpty();
+    }
+
+    /**
+     * Return a connection from a healthy replica that is not saturated
+     *
+     * @return The connection, or null if the primary should be used
+     */
+    Connection getConnection() {
+        int size = pools.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+
+        long now = System.currentTimeMillis();
+
+        List<Integer> order = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            int idx = (start + i) % size;
+
+            if (failedUntil.get(idx) <= now && pools.get(idx).isRunning()) {
+                order.add(idx);
+            }
+        }
+
+        if (strategy == Strategy.LEASTBUSY) {
+            order.sort((a, b) -> Integer.compare(gates.get(a).inUse(), gates.get(b).inUse()));
+        }
+
+        for (int idx : order) {
+            PoolGate gate = gates.get(idx);
+
+            if (!gate.tryAcquire()) {
+                continue;
+            }
+
+            try {
+                return GatedConnection.wrap(pools.get(idx).getConnection(), gate);
+            } catch (SQLException sqx) {
+                gate.release();
+                failedUntil.set(idx, System.currentTimeMillis() + RETRY_MILLIS);
+
+                log.warn("Read Replica {} for {} Failed: {}", pools.get(idx).getPoolName(), name, sqx.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replica counters
+     *
+     * @return List of ApiObjects with pool name, inUse and failing
+     */
+    List<ApiObject> getStats() {
+        List<ApiObject> lstRet = new ArrayList<>();
+
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < pools.size(); i++) {
+            ApiObject objStat = gates.get(i).getStats();
+
+            objStat.setString("pool", pools.get(i).getPoolName());
+            objStat.setBoolean("failing", failedUntil.get(i) > now);
+
+            lstRet.add(objStat);
+        }
+
+        return lstRet;
+    }
+}
@@ -0,0 +1,508 @@
+package com.progbits.db.dataaccess;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes a ResultSet to a channel as CSV or JSON Lines.
+ *
+ * <p>Values are read from the ResultSet by type and encoded straight into a
+ * direct buffer, which is written to the channel each time it fills. Whole
+ * numbers, booleans and timestamps are written digit by digit, text is UTF-8
+ * encoded and escaped a character at a time, and column labels are encoded
+ * once.
+ * No ApiObject or line String is built per row, so memory stays at one buffer
+ * no matter how many rows are exported.</p>
+ *
+ * <p>Timestamps are written as ISO-8601 in UTC, like the OffsetDateTime
+ * values DbRows returns. A DATE is written as midnight UTC of its day.</p>
+ *
+ * @author kscarr73
+ */
+final class ResultExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED = 16;
+
+    // Direct buffers are slow to allocate, keep a few for the next export
+    private static final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final int[] POW10 = {1, 10, 100, 1000, 10000, 100000};
+
+    private enum Kind {
+        INT,
+        LONG,
+        DOUBLE,
+        DECIMAL,
+        BOOLEAN,
+        DATE,
+        TIMESTAMP,
+        TEXT
+    }
+
+    private final ResultSet rs;
+    private final ExportFormat format;
+    private final WritableByteChannel out;
+
+    private final Kind[] kinds;
+    private final byte[][] labels;
+
+    private ByteBuffer buf;
+
+    private ResultExporter(ResultSet rs, ExportFormat format, WritableByteChannel out) throws SQLException {
+        this.rs = rs;
+        this.format = format;
+        this.out = out;
+
+        ResultSetMetaData meta = rs.getMetaData();
+        int count = meta.getColumnCount();
+
+        kinds = new Kind[count];
+        labels = new byte[count][];
+
+        for (int i = 0; i < count; i++) {
+            kinds[i] = kindOf(meta.getColumnType(i + 1));
+            labels[i] = encodeLabel(meta.getColumnLabel(i + 1), i == 0);
+        }
+    }
+
+    /**
+     * Write every row of the ResultSet
+     *
+     * @param rs The ResultSet, positioned before the first row
+     * @param format The file format
+     * @param out Channel to write to, not closed
+     * @return Rows written
+     */
+    static long export(ResultSet rs, ExportFormat format, WritableByteChannel out) throws SQLException, IOException {
+        ResultExporter exporter = new ResultExporter(rs, format, out);
+
+        exporter.buf = borrow();
+
+        try {
+            return exporter.writeAll();
+        } finally {
+            release(exporter.buf);
+        }
+    }
+
+    private static ByteBuffer borrow() {
+        ByteBuffer pooled = buffers.poll();
+
+        return pooled != null ? pooled.clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void release(ByteBuffer used) {
+        if (buffers.size() < MAX_POOLED) {
+            buffers.offer(used);
+        }
+    }
+
+    private static Kind kindOf(int type) {
+        return switch (type) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> Kind.INT;
+            case Types.BIGINT -> Kind.LONG;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> Kind.DOUBLE;
+            case Types.DECIMAL, Types.NUMERIC -> Kind.DECIMAL;
+            case Types.BIT, Types.BOOLEAN -> Kind.BOOLEAN;
+            case Types.DATE -> Kind.DATE;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> Kind.TIMESTAMP;
+            default -> Kind.TEXT;
+        };
+    }
+
+    /**
+     * The bytes written before each value: the header field for CSV, or the
+     * separator and key for JSON
+     */
+    private byte[] encodeLabel(String label, boolean first) {
+        ByteBuffer tmp = ByteBuffer.allocate(label.length() * 6 + 8);
+        ByteBuffer saved = buf;
+
+        buf = tmp;
+
+        try {
+            if (format == ExportFormat.CSV) {
+                putCsvText(label);
+            } else {
+                buf.put((byte) (first ? '{' : ','));
+                putJsonText(label);
+                buf.put((byte) ':');
+            }
+        } catch (IOException iox) {
+            // Never flushes, the buffer is sized for the label
+            throw new IllegalStateException(iox);
+        } finally {
+            buf = saved;
+        }
+
+        byte[] bytes = new byte[tmp.position()];
+
+        tmp.flip().get(bytes);
+
+        return bytes;
+    }
+
+    private long writeAll() throws SQLException, IOException {
+        if (format == ExportFormat.CSV) {
+            for (int i = 0; i < labels.length; i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+
+                put(labels[i]);
+            }
+
+            put((byte) '\n');
+        }
+
+        long count = 0;
+
+        while (rs.next()) {
+            if (format == ExportFormat.CSV) {
+                writeCsvRow();
+            } else {
+                writeJsonRow();
+            }
+
+            count++;
+        }
+
+        flush();
+
+        return count;
+    }
+
+    private void writeCsvRow() throws SQLException, IOException {
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) {
+                put((byte) ',');
+            }
+
+            writeValue(i + 1, kinds[i]);
+        }
+
+        put((byte) '\n');
+    }
+
+    private void writeJsonRow() throws SQLException, IOException {
+        for (int i = 0; i < kinds.length; i++) {
+            put(labels[i]);
+
+            writeValue(i + 1, kinds[i]);
+        }
+
+        if (kinds.length == 0) {
+            put((byte) '{');
+        }
+
+        ensure(2);
+        buf.put((byte) '}').put((byte) '\n');
+    }
+
+    private void writeValue(int col, Kind kind) throws SQLException, IOException {
+        switch (kind) {
+            case INT -> {
+                int val = rs.getInt(col);
+
+                if (rs.wasNull()) {
+                    putNull();
+                } else {
+                    putLong(val);
+                }
+            }
+            case LONG -> {
+                long val = rs.getLong(col);
+
+                if (rs.wasNull()) {
+                    putNull();
+                } else {
+                    putLong(val);
+                }
+            }
+            case DOUBLE -> {
+                double val = rs.getDouble(col);
+
+                if (rs.wasNull() || Double.isNaN(val) || Double.isInfinite(val)) {
+                    putNull();
+                } else {
+                    putAscii(Double.toString(val));
+                }
+            }
+            case DECIMAL -> {
+                BigDecimal val = rs.getBigDecimal(col);
+
+                if (val == null) {
+                    putNull();
+                } else {
+                    putAscii(val.toPlainString());
+                }
+            }
+            case BOOLEAN -> {
+                boolean val = rs.getBoolean(col);
+
+                if (rs.wasNull()) {
+                    putNull();
+                } else {
+                    put(val ? TRUE : FALSE);
+                }
+            }
+            case DATE -> {
+                // A DATE has no time zone, keep its day rather than the JVM's local midnight
+                Date val = rs.getDate(col);
+
+                if (val == null) {
+                    putNull();
+                } else {
+                    putTimestamp(val.toLocalDate().atStartOfDay());
+                }
+            }
+            case TIMESTAMP -> {
+                Timestamp val = rs.getTimestamp(col);
+
+                if (val == null) {
+                    putNull();
+                } else {
+                    putTimestamp(LocalDateTime.ofInstant(val.toInstant(), ZoneOffset.UTC));
+                }
+            }
+            default -> {
+                String val = rs.getString(col);
+
+                if (val == null) {
+                    putNull();
+                } else if (format == ExportFormat.CSV) {
+                    putCsvText(val);
+                } else {
+                    putJsonText(val);
+                }
+            }
+        }
+    }
+
+    private void putNull() throws IOException {
+        if (format == ExportFormat.JSON_LINES) {
+            put(NULL);
+        }
+    }
+
+    private void putLong(long val) throws IOException {
+        if (val == Long.MIN_VALUE) {
+            putAscii(Long.toString(val));
+            return;
+        }
+
+        ensure(20);
+
+        if (val < 0) {
+            buf.put((byte) '-');
+            val = -val;
+        }
+
+        int start = buf.position();
+
+        do {
+            buf.put((byte) ('0' + val % 10));
+            val /= 10;
+        } while (val > 0);
+
+        // Digits went in lowest first
+        for (int lo = start, hi = buf.position() - 1; lo < hi; lo++, hi--) {
+            byte tmp = buf.get(lo);
+
+            buf.put(lo, buf.get(hi));
+            buf.put(hi, tmp);
+        }
+    }
+
+    private void putDigits(int val, int width) {
+        for (int div = POW10[width - 1]; div > 0; div /= 10) {
+            buf.put((byte) ('0' + (val / div) % 10));
+        }
+    }
+
+    private void putTimestamp(LocalDateTime utc) throws IOException {
+        int nanos = utc.getNano();
+
+        ensure(40);
+
+        if (format == ExportFormat.JSON_LINES) {
+            buf.put((byte) '"');
+        }
+
+        if (utc.getYear() < 0 || utc.getYear() > 9999) {
+            putAscii(Integer.toString(utc.getYear()));
+        } else {
+            putDigits(utc.getYear(), 4);
+        }
+
+        buf.put((byte) '-');
+        putDigits(utc.getMonthValue(), 2);
+        buf.put((byte) '-');
+        putDigits(utc.getDayOfMonth(), 2);
+        buf.put((byte) 'T');
+        putDigits(utc.getHour(), 2);
+        buf.put((byte) ':');
+        putDigits(utc.getMinute(), 2);
+        buf.put((byte) ':');
+        putDigits(utc.getSecond(), 2);
+
+        if (nanos % 1_000_000 == 0) {
+            buf.put((byte) '.');
+            putDigits(nanos / 1_000_000, 3);
+        } else {
+            buf.put((byte) '.');
+            putDigits(nanos / 1000, 6);
+        }
+
+        buf.put((byte) 'Z');
+
+        if (format == ExportFormat.JSON_LINES) {
+            buf.put((byte) '"');
+        }
+    }
+
+    private void putCsvText(String val) throws IOException {
+        boolean quote = false;
+
+        for (int i = 0; i < val.length() && !quote; i++) {
+            char c = val.charAt(i);
+
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (quote) {
+            put((byte) '"');
+        }
+
+        for (int i = 0; i < val.length(); i++) {
+            char c = val.charAt(i);
+
+            ensure(4);
+
+            if (c == '"') {
+                buf.put((byte) '"').put((byte) '"');
+            } else {
+                i = putChar(val, i, c);
+            }
+        }
+
+        if (quote) {
+            put((byte) '"');
+        }
+    }
+
+    private void putJsonText(String val) throws IOException {
+        put((byte) '"');
+
+        for (int i = 0; i < val.length(); i++) {
+            char c = val.charAt(i);
+
+            ensure(6);
+
+            switch (c) {
+                case '"' ->
+                    buf.put((byte) '\\').put((byte) '"');
+                case '\\' ->
+                    buf.put((byte) '\\').put((byte) '\\');
+                case '\n' ->
+                    buf.put((byte) '\\').put((byte) 'n');
+                case '\r' ->
+                    buf.put((byte) '\\').put((byte) 'r');
+                case '\t' ->
+                    buf.put((byte) '\\').put((byte) 't');
+                default -> {
+                    if (c < 0x20) {
+                        buf.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                            .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+                    } else {
+                        i = putChar(val, i, c);
+                    }
+                }
+            }
+        }
+
+        put((byte) '"');
+    }
+
+    /**
+     * UTF-8 encode one character, or a surrogate pair, with 4 bytes free
+     *
+     * @return Index of the last character used
+     */
+    private int putChar(String val, int i, char c) {
+        if (c < 0x80) {
+            buf.put((byte) c);
+        } else if (c < 0x800) {
+            buf.put((byte) (0xC0 | (c >> 6)))
+                .put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c) && i + 1 < val.length() && Character.isLowSurrogate(val.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, val.charAt(i + 1));
+
+            buf.put((byte) (0xF0 | (cp >> 18)))
+                .put((byte) (0x80 | ((cp >> 12) & 0x3F)))
+                .put((byte) (0x80 | ((cp >> 6) & 0x3F)))
+                .put((byte) (0x80 | (cp & 0x3F)));
+
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            buf.put((byte) '?');
+        } else {
+            buf.put((byte) (0xE0 | (c >> 12)))
+                .put((byte) (0x80 | ((c >> 6) & 0x3F)))
+                .put((byte) (0x80 | (c & 0x3F)));
+        }
+
+        return i;
+    }
+
+    private void putAscii(String val) throws IOException {
+        ensure(val.length());
+
+        for (int i = 0; i < val.length(); i++) {
+            buf.put((byte) val.charAt(i));
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        ensure(1);
+        buf.put(b);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buf.put(bytes);
+    }
+
+    private void ensure(int needed) throws IOException {
+        if (buf.remaining() < needed) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+
+        buf.clear();
+    }
+}
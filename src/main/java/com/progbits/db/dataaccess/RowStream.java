@@ -0,0 +1,106 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Reads rows from an open ResultSet one at a time, holding the Connection
+ * until the stream is exhausted or closed.
+ *
+ * @author kscarr73
+ */
+final class RowStream extends Spliterators.AbstractSpliterator<ApiObject> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RowStream.class);
+
+    private final Connection conn;
+    private final PreparedStatement ps;
+    private final ResultSet rs;
+    private final ResultSetMetaData meta;
+    private final boolean restoreAutoCommit;
+
+    private boolean closed = false;
+
+    RowStream(Connection conn, PreparedStatement ps, ResultSet rs, boolean restoreAutoCommit) throws SQLException {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+        this.conn = conn;
+        this.ps = ps;
+        this.rs = rs;
+        this.meta = rs.getMetaData();
+        this.restoreAutoCommit = restoreAutoCommit;
+    }
+
+    /**
+     * Create a Stream that closes all JDBC resources when closed
+     *
+     * @return Stream of rows
+     */
+    Stream<ApiObject> stream() {
+        return StreamSupport.stream(this, false).onClose(this::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ApiObject> action) {
+        if (closed) {
+            return false;
+        }
+
+        try {
+            if (rs.next()) {
+                action.accept(DbRows.toApiObject(rs, meta));
+
+                return true;
+            }
+        } catch (SQLException sqx) {
+            close();
+
+            throw new IllegalStateException("Row Read Failed: " + sqx.getMessage(), sqx);
+        }
+
+        // Release the connection as soon as the last row is read
+        close();
+
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            rs.close();
+            ps.close();
+
+            if (restoreAutoCommit) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException sqx) {
+            log.warn("Row Stream Close Failed: {}", sqx.getMessage());
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException sqx) {
+                log.warn("Row Stream Connection Close Failed: {}", sqx.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Merges rows from the pools of a shard group into one ordered result.
+ *
+ * <p>Each pool returns its rows already ordered by the sort keys and limited,
+ * so the merge only holds the current row of each pool and takes the
+ * smallest of them next, stopping at the limit. Rows of pools that are not
+ * needed are never read.</p>
+ *
+ * <p>Values are compared in Java: numbers by value, other values of the same
+ * type by their natural order, strings by character code. Nulls sort last
+ * ascending and first descending. Sort on columns where the database orders
+ * the same way, such as numbers, dates and ids.</p>
+ *
+ * @author kscarr73
+ */
+final class ShardMerge {
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+    private final int limit;
+
+    /**
+     * @param sortKeys Column names, each optionally followed by ASC or DESC,
+     * null or empty to keep pool order
+     * @param limit Max rows over all pools, 0 for no limit
+     * @throws ApiException 400 if a sort key is not valid
+     */
+    ShardMerge(List<String> sortKeys, int limit) throws ApiException {
+        if (limit < 0) {
+            throw new ApiException(400, "Limit Must Not Be Negative");
+        }
+
+        this.limit = limit;
+
+        if (sortKeys != null) {
+            for (var sortKey : sortKeys) {
+                String[] parts = sortKey.trim().split("\\s+");
+
+                if (parts.length > 2 || (parts.length == 2 && !parts[1].equalsIgnoreCase("ASC") && !parts[1].equalsIgnoreCase("DESC"))) {
+                    throw new ApiException(400, "Invalid Sort Key: " + sortKey);
+                }
+
+                String key = KeysetPage.checkIdentifier(parts[0]);
+
+                // The pool SQL is wrapped, so only the column name is visible
+                keys.add(key.substring(key.indexOf('.') + 1));
+                descending.add(parts.length == 2 && parts[1].equalsIgnoreCase("DESC"));
+            }
+        }
+    }
+
+    /**
+     * Wrap the SQL so one pool returns its rows ordered and limited
+     *
+     * @param dialect Dialect of the pool
+     * @param sql The SQL given by the caller
+     * @return SQL to run on the pool
+     */
+    String shardSql(DbDialect dialect, String sql) {
+        // OFFSET FETCH needs an ORDER BY, without sort keys the merge applies the limit
+        boolean withLimit = limit > 0 && (!keys.isEmpty() || dialect.getLimitSyntax() != DbDialect.LimitSyntax.OFFSET_FETCH);
+
+        if (keys.isEmpty() && !withLimit) {
+            return sql;
+        }
+
+        StringBuilder sb = new StringBuilder("SELECT * FROM (").append(sql).append(") shard_rows");
+
+        if (!keys.isEmpty()) {
+            sb.append(" ORDER BY ");
+
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+
+                sb.append(keys.get(i)).append(descending.get(i) ? " DESC" : " ASC");
+            }
+        }
+
+        if (withLimit) {
+            dialect.appendLimit(sb, limit, 0);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Merge the rows of each pool
+     *
+     * @param shards Rows of each pool, in sort key order
+     * @return Stream that closes every pool Stream when closed
+     */
+    Stream<ApiObject> merge(List<Stream<ApiObject>> shards) {
+        return StreamSupport.stream(new Rows(shards), false).onClose(() -> {
+            for (var shard : shards) {
+                shard.close();
+            }
+        });
+    }
+
+    private final class Cursor {
+
+        private final int shard;
+        private final Iterator<ApiObject> rows;
+        private String[] fields;
+        private ApiObject row;
+
+        Cursor(int shard, Iterator<ApiObject> rows) {
+            this.shard = shard;
+            this.rows = rows;
+        }
+
+        boolean advance() {
+            row = rows.hasNext() ? rows.next() : null;
+
+            if (row != null && fields == null) {
+                fields = resolve(row);
+            }
+
+            return row != null;
+        }
+
+        Object value(int key) {
+            return row.get(fields[key]);
+        }
+    }
+
+    private final class Rows extends Spliterators.AbstractSpliterator<ApiObject> {
+
+        private final List<Iterator<ApiObject>> shards = new ArrayList<>();
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(ShardMerge.this::compare);
+        private int next = 0;
+        private int returned = 0;
+        private boolean started = false;
+
+        Rows(List<Stream<ApiObject>> shards) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+            for (var shard : shards) {
+                this.shards.add(shard.iterator());
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ApiObject> action) {
+            if (limit > 0 && returned >= limit) {
+                return false;
+            }
+
+            if (!started) {
+                // First rows are read here, not in the constructor, so a read failure closes the Stream
+                started = true;
+
+                for (int i = 0; i < shards.size() && !keys.isEmpty(); i++) {
+                    Cursor cursor = new Cursor(i, shards.get(i));
+
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+            }
+
+            ApiObject row = keys.isEmpty() ? nextInPoolOrder() : nextInKeyOrder();
+
+            if (row == null) {
+                return false;
+            }
+
+            returned++;
+            action.accept(row);
+
+            return true;
+        }
+
+        private ApiObject nextInKeyOrder() {
+            Cursor cursor = queue.poll();
+
+            if (cursor == null) {
+                return null;
+            }
+
+            ApiObject row = cursor.row;
+
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+
+            return row;
+        }
+
+        private ApiObject nextInPoolOrder() {
+            while (next < shards.size()) {
+                Iterator<ApiObject> rows = shards.get(next);
+
+                if (rows.hasNext()) {
+                    return rows.next();
+                }
+
+                next++;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Field names in the row for the sort keys, drivers differ in the case of
+     * unquoted column names
+     */
+    private String[] resolve(ApiObject row) {
+        String[] fields = new String[keys.size()];
+
+        for (int i = 0; i < keys.size(); i++) {
+            fields[i] = keys.get(i);
+
+            if (!row.keySet().contains(fields[i])) {
+                for (var field : row.keySet()) {
+                    if (field.equalsIgnoreCase(fields[i])) {
+                        fields[i] = field;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return fields;
+    }
+
+    private int compare(Cursor a, Cursor b) {
+        for (int i = 0; i < keys.size(); i++) {
+            int cmp = compareValues(a.value(i), b.value(i));
+
+            if (cmp != 0) {
+                return descending.get(i) ? -cmp : cmp;
+            }
+        }
+
+        // Equal keys keep pool order
+        return Integer.compare(a.shard, b.shard);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        } else if (a == null) {
+            return 1;
+        } else if (b == null) {
+            return -1;
+        }
+
+        if (a instanceof Number x && b instanceof Number y && a.getClass() != b.getClass()) {
+            return toDecimal(x).compareTo(toDecimal(y));
+        }
+
+        if (a instanceof Comparable cmp && a.getClass() == b.getClass()) {
+            return cmp.compareTo(b);
+        }
+
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static BigDecimal toDecimal(Number value) {
+        if (value instanceof BigDecimal dec) {
+            return dec;
+        } else if (value instanceof BigInteger big) {
+            return new BigDecimal(big);
+        } else if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(value.doubleValue());
+        }
+
+        return BigDecimal.valueOf(value.longValue());
+    }
+}
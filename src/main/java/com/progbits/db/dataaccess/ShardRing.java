@@ -0,0 +1,143 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Consistent hash of shard keys onto the pools of a shard group.
+ *
+ * <p>Each pool owns {@link #VNODES} points on a 64 bit ring, and a key goes
+ * to the pool owning the first point at or after the hash of the key. Adding
+ * a pool to the group only moves the keys that land on its points, about
+ * 1/n of them, instead of nearly every key as with hash modulo n.</p>
+ *
+ * <p>Keys are hashed on their text, with whole numbers as plain digits, so
+ * 42, 42L and "42" go to the same pool.</p>
+ *
+ * @author kscarr73
+ */
+final class ShardRing {
+
+    private static final int VNODES = 160;
+
+    private final String name;
+    private final List<String> pools;
+    private final String keyField;
+
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param name Shard group name for messages
+     * @param pools Pool names in the group
+     * @param keyField Field that routes point operations, null if not set
+     */
+    ShardRing(String name, List<String> pools, String keyField) {
+        this.name = name;
+        this.pools = List.copyOf(pools);
+        this.keyField = keyField;
+
+        long[][] ring = new long[pools.size() * VNODES][];
+
+        for (int p = 0; p < pools.size(); p++) {
+            for (int v = 0; v < VNODES; v++) {
+                ring[p * VNODES + v] = new long[]{hash(pools.get(p) + "#" + v), p};
+            }
+        }
+
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+
+        points = new long[ring.length];
+        owners = new String[ring.length];
+
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = pools.get((int) ring[i][1]);
+        }
+    }
+
+    List<String> getPools() {
+        return pools;
+    }
+
+    String getKeyField() {
+        return keyField;
+    }
+
+    /**
+     * Pool for a shard key value
+     *
+     * @throws ApiException 400 if the key is null
+     */
+    String poolFor(Object key) throws ApiException {
+        if (key == null) {
+            throw new ApiException(400, "Shard Key Required: " + name);
+        }
+
+        int idx = Arrays.binarySearch(points, hash(keyText(key)));
+
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+
+        return owners[idx == points.length ? 0 : idx];
+    }
+
+    /**
+     * Pool for a row, from the DB_SHARDKEY field
+     *
+     * @throws ApiException 400 if there is no DB_SHARDKEY, the row does not
+     * have the field, or it is a list of values
+     */
+    String poolFor(ApiObject row) throws ApiException {
+        if (keyField == null) {
+            throw new ApiException(400, "DB_SHARDKEY Not Set: " + name);
+        }
+
+        Object key = row.get(keyField);
+
+        if (key instanceof List) {
+            throw new ApiException(400, "Shard Key Must Be One Value: " + keyField);
+        }
+
+        if (key == null) {
+            throw new ApiException(400, "Shard Key Required: " + keyField);
+        }
+
+        return poolFor(key);
+    }
+
+    private static String keyText(Object key) {
+        if (key instanceof BigDecimal dec) {
+            return dec.stripTrailingZeros().toPlainString();
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * 64 bit FNV-1a, finished with the MurmurHash3 mix so nearby keys spread
+     * over the whole ring
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
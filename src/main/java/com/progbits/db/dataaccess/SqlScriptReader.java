@@ -0,0 +1,78 @@
+package com.progbits.db.dataaccess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Reads a schema script one statement at a time.
+ *
+ * <p>Statements are separated by a blank line, and lines starting with --
+ * are skipped. Only the statement being read is held in memory.</p>
+ *
+ * @author scarr
+ */
+final class SqlScriptReader implements AutoCloseable {
+
+    private final BufferedReader reader;
+
+    SqlScriptReader(InputStream is) {
+        this.reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the next statement
+     *
+     * @return The statement, null at the end of the script
+     * @throws IOException
+     */
+    String next() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String fileLine;
+
+        while ((fileLine = reader.readLine()) != null) {
+            if (fileLine.startsWith("--")) {
+                // Ignore this line
+            } else if (fileLine.trim().isBlank()) {
+                if (!sb.isEmpty()) {
+                    return sb.toString();
+                }
+            } else {
+                sb.append(fileLine).append("\n");
+            }
+        }
+
+        return sb.isEmpty() ? null : sb.toString();
+    }
+
+    /**
+     * Is the statement an INSERT, UPDATE, DELETE or MERGE that can be sent in
+     * a JDBC batch
+     *
+     * @param sql The statement
+     * @return true for DML
+     */
+    static boolean isDml(String sql) {
+        String start = sql.stripLeading();
+        int end = 0;
+
+        while (end < start.length() && Character.isLetter(start.charAt(end))) {
+            end++;
+        }
+
+        return switch (start.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "INSERT", "UPDATE", "DELETE", "MERGE" ->
+                true;
+            default ->
+                false;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,169 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * SQL with :{field} replaceable values compiled to positional JDBC SQL.
+ *
+ * <p>Only <code>:{field}</code> is replaced, so array slices such as
+ * <code>arr[1:n]</code> keep working. Quoted strings, quoted identifiers,
+ * comments and PostgreSQL <code>::</code> casts are left untouched.</p>
+ *
+ * @author kscarr73
+ */
+final class SqlTemplate {
+
+    private final String sql;
+    private final List<String> params;
+
+    private SqlTemplate(String sql, List<String> params) {
+        this.sql = sql;
+        this.params = Collections.unmodifiableList(params);
+    }
+
+    /**
+     * Positional SQL with each field replaced by <code>?</code>
+     *
+     * @return The SQL to prepare
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Field names in the order they are bound
+     *
+     * @return List of field names, may contain duplicates
+     */
+    public List<String> getParams() {
+        return params;
+    }
+
+    /**
+     * Bind the values from search into the statement in parameter order
+     *
+     * @param ps Statement prepared from {@link #getSql()}
+     * @param search Values for each :{field} in the SQL
+     * @throws SQLException
+     * @throws ApiException If a field is missing from search
+     */
+    public void bind(PreparedStatement ps, ApiObject search) throws SQLException, ApiException {
+        bind(ps, args(search));
+    }
+
+    /**
+     * The values from search in parameter order, for the positional SQL
+     *
+     * @param search Values for each :{field} in the SQL
+     * @return One value for each <code>?</code> in {@link #getSql()}
+     * @throws ApiException If a field is missing from search
+     */
+    public Object[] args(ApiObject search) throws ApiException {
+        Object[] args = new Object[params.size()];
+
+        for (int i = 0; i < params.size(); i++) {
+            String name = params.get(i);
+
+            if (search == null || !search.containsKey(name)) {
+                throw new ApiException(400, "SQL Field Not Found: " + name);
+            }
+
+            args[i] = search.get(name);
+        }
+
+        return args;
+    }
+
+    /**
+     * Bind positional arguments into the statement
+     *
+     * @param ps Prepared statement
+     * @param args Values in order, may be null
+     * @throws SQLException
+     */
+    public static void bind(PreparedStatement ps, Object[] args) throws SQLException {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+        }
+    }
+
+    /**
+     * Parse SQL with :{field} values into a template
+     *
+     * @param sql The SQL to parse
+     * @return The compiled template
+     */
+    public static SqlTemplate compile(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        List<String> params = new ArrayList<>();
+
+        int len = sql.length();
+        int i = 0;
+
+        while (i < len) {
+            char c = sql.charAt(i);
+
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = skipQuoted(sql, i, c);
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                end = end < 0 ? len : end;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? len : end + 2;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == ':' && i + 1 < len && sql.charAt(i + 1) == ':') {
+                sb.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < len && sql.charAt(i + 1) == '{') {
+                int end = sql.indexOf('}', i + 2);
+
+                if (end < 0) {
+                    sb.append(c);
+                    i++;
+                } else {
+                    params.add(sql.substring(i + 2, end).trim());
+                    sb.append('?');
+                    i = end + 1;
+                }
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+
+        return new SqlTemplate(sb.toString(), params);
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+
+        return sql.length();
+    }
+}
@@ -0,0 +1,77 @@
+package com.progbits.db.dataaccess;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Bounded cache of compiled SqlTemplates keyed by SQL text
+ *
+ * @author kscarr73
+ */
+final class SqlTemplateCache {
+
+    private final Map<String, SqlTemplate> templates = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SqlTemplateCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the compiled template for sql, compiling it on first use
+     *
+     * @param sql SQL with :{field} replaceable values
+     * @return The compiled template
+     */
+    SqlTemplate get(String sql) {
+        SqlTemplate template = templates.get(sql);
+
+        if (template != null) {
+            hits.increment();
+
+            return template;
+        }
+
+        misses.increment();
+
+        template = SqlTemplate.compile(sql);
+
+        if (maxSize > 0) {
+            if (templates.size() >= maxSize) {
+                Iterator<String> keys = templates.keySet().iterator();
+
+                if (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            }
+
+            templates.put(sql, template);
+        }
+
+        return template;
+    }
+
+    /**
+     * Cache counters
+     *
+     * @return ApiObject with size, maxSize, hits and misses
+     */
+    ApiObject getStats() {
+        ApiObject objRet = new ApiObject();
+
+        objRet.setInteger("size", templates.size());
+        objRet.setInteger("maxSize", maxSize);
+        objRet.setLong("hits", hits.sum());
+        objRet.setLong("misses", misses.sum());
+
+        return objRet;
+    }
+}
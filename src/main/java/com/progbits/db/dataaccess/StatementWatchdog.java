@@ -0,0 +1,148 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cancels running statements when their deadline passes or the thread that
+ * runs them is interrupted.
+ *
+ * <p>Statement.setQueryTimeout only counts whole seconds and is not checked
+ * by every driver, and a thread blocked in a driver socket read does not
+ * notice an interrupt. The watchdog checks the statements it watches every
+ * {@link #POLL_MILLIS} ms and at each deadline, and calls Statement.cancel
+ * on its own thread. These are platform threads, a statement running on a
+ * virtual thread can hold its carrier, such as an embedded database working
+ * through a query.</p>
+ *
+ * @author kscarr73
+ */
+final class StatementWatchdog {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementWatchdog.class);
+
+    private static final long POLL_MILLIS = 50;
+
+    /**
+     * A statement being watched
+     */
+    static final class Watch {
+
+        private final Statement stmt;
+        private final long deadlineNanos;
+        private final Thread caller;
+        private volatile boolean cancelled = false;
+
+        private Watch(Statement stmt, long deadlineNanos, Thread caller) {
+            this.stmt = stmt;
+            this.deadlineNanos = deadlineNanos;
+            this.caller = caller;
+        }
+
+        /**
+         * @return true if the watchdog cancelled the statement
+         */
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private long nextWake = Long.MAX_VALUE;
+
+    /**
+     * Watch a statement until unwatch is called
+     *
+     * @param stmt The statement
+     * @param deadlineNanos System.nanoTime value to cancel at
+     * @return The watch to pass to unwatch
+     */
+    Watch watch(Statement stmt, long deadlineNanos) {
+        Watch watch = new Watch(stmt, deadlineNanos, Thread.currentThread());
+
+        watches.add(watch);
+
+        if (started.compareAndSet(false, true)) {
+            Thread.ofPlatform().daemon().name("db-statement-watchdog").start(this::run);
+        }
+
+        lock.lock();
+
+        try {
+            // Wake the watchdog if this deadline is before its next check
+            if (deadlineNanos - nextWake < 0) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return watch;
+    }
+
+    void unwatch(Watch watch) {
+        watches.remove(watch);
+    }
+
+    int getWatching() {
+        return watches.size();
+    }
+
+    private void run() {
+        while (true) {
+            long now = System.nanoTime();
+            long next = now + TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+
+            for (var watch : watches) {
+                if (now - watch.deadlineNanos >= 0 || watch.caller.isInterrupted()) {
+                    watches.remove(watch);
+                    cancel(watch);
+                } else if (watch.deadlineNanos - next < 0) {
+                    next = watch.deadlineNanos;
+                }
+            }
+
+            lock.lock();
+
+            try {
+                nextWake = watches.isEmpty() ? Long.MAX_VALUE : next;
+
+                if (watches.isEmpty()) {
+                    changed.await();
+                } else {
+                    changed.awaitNanos(next - System.nanoTime());
+                }
+            } catch (InterruptedException iex) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void cancel(Watch watch) {
+        watch.cancelled = true;
+
+        // Statement.cancel may wait on the network, it must not hold up the other watches
+        Thread.ofPlatform().daemon().name("db-statement-cancel").start(() -> {
+            try {
+                watch.stmt.cancel();
+            } catch (SQLException sqx) {
+                log.debug("Statement Cancel Failed: {}", sqx.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,24 @@
+package com.progbits.db.dataaccess;
+
+import com.progbits.api.exception.ApiException;
+
+/**
+ * Work run inside {@link DataManager#inTransaction(String, TransactionWork)}
+ *
+ * @param <T> Type returned from the transaction
+ * @author kscarr73
+ */
+@FunctionalInterface
+public interface TransactionWork<T> {
+
+    /**
+     * Run the work using the transaction handle.
+     *
+     * <p>Throwing rolls the transaction back.</p>
+     *
+     * @param tx Handle for operations on the transaction connection
+     * @return Value returned from inTransaction, may be null
+     * @throws ApiException
+     */
+    T run(DbTransaction tx) throws ApiException;
+}
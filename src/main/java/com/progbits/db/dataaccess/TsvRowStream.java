@@ -0,0 +1,188 @@
+package com.progbits.db.dataaccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Encodes rows as tab separated text while it is read.
+ *
+ * <p>Uses the text format shared by PostgreSQL COPY and MariaDB LOAD DATA:
+ * tab between fields, newline after each row, \N for null, and backslash
+ * escapes for backslash, tab, newline and carriage return. Only about one
+ * buffer of rows is encoded at a time, so memory stays flat no matter how
+ * many rows are loaded.</p>
+ *
+ * @author kscarr73
+ */
+final class TsvRowStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] NULL = {'\\', 'N'};
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private final Iterator<ApiObject> rows;
+    private final String[] fields;
+    private final boolean[] dates;
+    private final boolean postgres;
+
+    private byte[] buf = new byte[BUFFER_SIZE + 1024];
+    private int pos = 0;
+    private int limit = 0;
+
+    private long rowCount = 0;
+
+    /**
+     * @param rows Rows to encode
+     * @param fields ApiObject field for each column, in column order
+     * @param dates true for each DATE column, written as its day
+     * @param dialect Dialect of the target, for boolean and timestamp text
+     */
+    TsvRowStream(Iterator<ApiObject> rows, List<String> fields, boolean[] dates, DbDialect dialect) {
+        this.rows = rows;
+        this.fields = fields.toArray(String[]::new);
+        this.dates = dates;
+        this.postgres = dialect == DbDialect.POSTGRESQL;
+    }
+
+    /**
+     * @return Rows encoded so far
+     */
+    long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, limit - pos);
+
+        System.arraycopy(buf, pos, b, off, count);
+        pos += count;
+
+        return count;
+    }
+
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = 0;
+
+        while (limit < BUFFER_SIZE && rows.hasNext()) {
+            ApiObject row = rows.next();
+
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    put((byte) '\t');
+                }
+
+                putValue(fields[i], row.get(fields[i]), dates[i]);
+            }
+
+            put((byte) '\n');
+            rowCount++;
+        }
+
+        return limit > 0;
+    }
+
+    private void putValue(String field, Object value, boolean date) throws IOException {
+        switch (value) {
+            case null ->
+                put(NULL, false);
+            case String strValue ->
+                put(strValue.getBytes(StandardCharsets.UTF_8), true);
+            case Boolean bValue ->
+                put(postgres ? (bValue ? "t" : "f") : (bValue ? "1" : "0"));
+            case BigDecimal decValue ->
+                put(decValue.toPlainString());
+            case Number numValue ->
+                put(numValue.toString());
+            case OffsetDateTime dtValue when date ->
+                // The day as given, moving it to UTC first could change the day
+                put(dtValue.toLocalDate().toString());
+            case OffsetDateTime dtValue ->
+                put(dtValue.withOffsetSameInstant(ZoneOffset.UTC).format(DATE_TIME) + (postgres ? "+00" : ""));
+            case byte[] bytes ->
+                throw new IOException("Binary Values Not Supported: " + field);
+            default ->
+                put(value.toString().getBytes(StandardCharsets.UTF_8), true);
+        }
+    }
+
+    private void put(String value) {
+        put(value.getBytes(StandardCharsets.US_ASCII), false);
+    }
+
+    private void put(byte[] bytes, boolean escape) {
+        // Worst case every byte is escaped
+        ensure(escape ? bytes.length * 2 : bytes.length);
+
+        if (!escape) {
+            System.arraycopy(bytes, 0, buf, limit, bytes.length);
+            limit += bytes.length;
+            return;
+        }
+
+        // Escaped characters are single bytes, never part of a UTF-8 sequence
+        for (byte b : bytes) {
+            switch (b) {
+                case '\\' -> {
+                    buf[limit++] = '\\';
+                    buf[limit++] = '\\';
+                }
+                case '\t' -> {
+                    buf[limit++] = '\\';
+                    buf[limit++] = 't';
+                }
+                case '\n' -> {
+                    buf[limit++] = '\\';
+                    buf[limit++] = 'n';
+                }
+                case '\r' -> {
+                    buf[limit++] = '\\';
+                    buf[limit++] = 'r';
+                }
+                default ->
+                    buf[limit++] = b;
+            }
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[limit++] = b;
+    }
+
+    private void ensure(int count) {
+        if (limit + count > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, limit + count));
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.progbits.db.dataaccess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+
+/**
+ * Holds saves for one table in memory and writes them in batches.
+ *
+ * <p>Saves are keyed on the id field. A save for a key already waiting is
+ * merged into it, fields in the later save win, so many saves of one row
+ * become one write. Rows are written when DB_BATCHSIZE keys are waiting or
+ * the oldest has waited DB_WRITEBEHIND_MS. When DB_WRITEBEHIND_SIZE keys are
+ * waiting, callers saving a new key wait for the next write.</p>
+ *
+ * @author kscarr73
+ */
+final class WriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private static final long MIN_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Writes rows in one batch
+     */
+    interface Writer {
+
+        /**
+         * @return ApiObject with an errors list of {row, message} if rows
+         * failed and nothing was written
+         */
+        ApiObject write(List<ApiObject> rows) throws ApiException;
+    }
+
+    private final String dbName;
+    private final String tableName;
+    private final String id;
+    private final BatchSaver.KeyMode keyMode;
+    private final int maxRows;
+    private final int batchSize;
+    private final long flushNanos;
+    private final long waitNanos;
+    private final Writer writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // Only one write at a time, so rows for a key are written in order
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private LinkedHashMap<Object, ApiObject> pending = new LinkedHashMap<>();
+    private long oldestNanos = 0;
+    private long retryAfterNanos;
+    private int failedWrites = 0;
+    private boolean closed = false;
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private volatile long lastFlushMillis = 0;
+
+    WriteBehindBuffer(String dbName, String tableName, String id, BatchSaver.KeyMode keyMode,
+        int maxRows, int batchSize, long flushMillis, long waitMillis, Writer writer) {
+        this.dbName = dbName;
+        this.tableName = tableName;
+        this.id = id;
+        this.keyMode = keyMode;
+        this.maxRows = maxRows;
+        this.batchSize = Math.min(batchSize, maxRows);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        this.writer = writer;
+        this.retryAfterNanos = System.nanoTime();
+    }
+
+    /**
+     * Start writing in the background
+     */
+    void start() {
+        Thread.ofVirtual().name("writebehind-" + dbName + "-" + tableName).start(this::run);
+    }
+
+    /**
+     * Is this buffer for saves of the table with the id and key mode
+     */
+    boolean accepts(String saveId, BatchSaver.KeyMode saveMode) {
+        return id.equals(saveId) && keyMode == saveMode;
+    }
+
+    /**
+     * Queue a save, merging it into a save of the same key that is waiting
+     *
+     * @param row Row with the id field set
+     * @throws ApiException 503 if the buffer stayed full, 500 after close
+     */
+    void put(ApiObject row) throws ApiException {
+        Object key = row.get(id);
+        ApiObject copy = DbRows.copy(row);
+
+        lock.lock();
+
+        try {
+            if (closed) {
+                throw new ApiException(500, "Write Behind Closed: " + tableName);
+            }
+
+            ApiObject waiting = pending.get(key);
+
+            if (waiting != null) {
+                merge(waiting, copy);
+                merged.increment();
+            } else {
+                long remaining = waitNanos;
+
+                while (pending.size() >= maxRows && !closed) {
+                    waits.increment();
+                    flushNeeded.signal();
+
+                    if (remaining <= 0) {
+                        throw new ApiException(503, "Write Behind Full: " + tableName);
+                    }
+
+                    remaining = notFull.awaitNanos(remaining);
+                }
+
+                if (closed) {
+                    throw new ApiException(500, "Write Behind Closed: " + tableName);
+                }
+
+                if (pending.isEmpty()) {
+                    oldestNanos = System.nanoTime();
+                }
+
+                pending.put(key, copy);
+
+                if (pending.size() >= batchSize) {
+                    flushNeeded.signal();
+                }
+            }
+
+            saves.increment();
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+
+            throw new ApiException(500, "Interrupted Waiting For Write Behind: " + tableName, iex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write every waiting row now
+     *
+     * @throws ApiException if the write failed, the rows stay queued
+     */
+    void flush() throws ApiException {
+        writeLock.lock();
+
+        try {
+            write(drain());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the background writer and write every waiting row
+     */
+    void close() {
+        lock.lock();
+
+        try {
+            closed = true;
+            flushNeeded.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flush();
+        } catch (ApiException | RuntimeException ex) {
+            log.error("Write Behind {} {} Lost {} Rows: {}", dbName, tableName, pendingCount(), ex.getMessage());
+        }
+    }
+
+    /**
+     * @return ApiObject with pending, saves, merged, flushes, rowsWritten,
+     * rowsDropped, failures, waits and lastFlushMillis
+     */
+    ApiObject getStats() {
+        ApiObject objRet = new ApiObject();
+
+        objRet.setInteger("pending", pendingCount());
+        objRet.setLong("saves", saves.sum());
+        objRet.setLong("merged", merged.sum());
+        objRet.setLong("flushes", flushes.sum());
+        objRet.setLong("rowsWritten", rowsWritten.sum());
+        objRet.setLong("rowsDropped", rowsDropped.sum());
+        objRet.setLong("failures", failures.sum());
+        objRet.setLong("waits", waits.sum());
+        objRet.setLong("lastFlushMillis", lastFlushMillis);
+
+        return objRet;
+    }
+
+    private int pendingCount() {
+        lock.lock();
+
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            lock.lock();
+
+            try {
+                while (!closed && !due()) {
+                    flushNeeded.awaitNanos(pending.isEmpty() ? flushNanos : untilDue());
+                }
+
+                if (closed) {
+                    return;
+                }
+            } catch (InterruptedException iex) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flush();
+
+                lock.lock();
+
+                try {
+                    failedWrites = 0;
+                } finally {
+                    lock.unlock();
+                }
+            } catch (Exception ex) {
+                // Keep the writer alive whatever the failure, nothing else flushes the buffer
+                lock.lock();
+
+                try {
+                    // Rows are back in pending, a full batch would be due at once, so back off
+                    long backoff = Math.min(Math.max(flushNanos, MIN_RETRY_NANOS) << Math.min(failedWrites, 8), MAX_RETRY_NANOS);
+
+                    failedWrites++;
+                    retryAfterNanos = System.nanoTime() + backoff;
+
+                    log.warn("Write Behind {} {} Failed {} Times, Retrying In {} ms: {}", dbName, tableName, failedWrites,
+                        TimeUnit.NANOSECONDS.toMillis(backoff), ex.getMessage());
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private boolean due() {
+        return !pending.isEmpty() && untilDue() <= 0;
+    }
+
+    /**
+     * Nanoseconds until waiting rows should be written, after a failed write
+     * no sooner than its backoff
+     */
+    private long untilDue() {
+        long now = System.nanoTime();
+        long wait = pending.size() >= batchSize ? 0 : oldestNanos + flushNanos - now;
+
+        return Math.max(wait, retryAfterNanos - now);
+    }
+
+    private LinkedHashMap<Object, ApiObject> drain() {
+        lock.lock();
+
+        try {
+            LinkedHashMap<Object, ApiObject> rows = pending;
+
+            pending = new LinkedHashMap<>();
+            notFull.signalAll();
+
+            return rows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(LinkedHashMap<Object, ApiObject> rows) throws ApiException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<ApiObject> lstRows = new ArrayList<>(rows.values());
+        ApiObject result;
+
+        try {
+            result = writer.write(lstRows);
+        } catch (ApiException | RuntimeException ex) {
+            failures.increment();
+            requeue(rows);
+
+            throw ex;
+        }
+
+        flushes.increment();
+        lastFlushMillis = (System.nanoTime() - start) / 1_000_000;
+
+        if (result == null || !result.isSet("errors")) {
+            rowsWritten.add(lstRows.size());
+            return;
+        }
+
+        // Nothing was written, drop the rows that failed and queue the rest again
+        failures.increment();
+
+        List<Object> keys = new ArrayList<>(rows.keySet());
+
+        for (var error : result.getList("errors")) {
+            Object key = keys.get(error.getInteger("row"));
+
+            log.error("Write Behind {} {} Dropped {}: {}", dbName, tableName, key, error.getString("message"));
+
+            rows.remove(key);
+            rowsDropped.increment();
+        }
+
+        requeue(rows);
+    }
+
+    /**
+     * Put rows that were not written back, saves made since win
+     */
+    private void requeue(Map<Object, ApiObject> rows) {
+        lock.lock();
+
+        try {
+            LinkedHashMap<Object, ApiObject> newer = pending;
+
+            pending = new LinkedHashMap<>(rows);
+
+            for (var entry : newer.entrySet()) {
+                ApiObject waiting = pending.get(entry.getKey());
+
+                if (waiting != null) {
+                    merge(waiting, entry.getValue());
+                } else {
+                    pending.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (!pending.isEmpty()) {
+                oldestNanos = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void merge(ApiObject into, ApiObject from) {
+        for (var field : from.keySet()) {
+            into.put(field, from.get(field));
+        }
+    }
+}
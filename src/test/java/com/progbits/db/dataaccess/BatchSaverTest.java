@@ -0,0 +1,92 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import com.progbits.api.model.ApiObject;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class BatchSaverTest {
+
+    private Connection conn;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:batchsaver");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE item (id INT AUTO_INCREMENT PRIMARY KEY, code VARCHAR(20) UNIQUE)");
+        }
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @BeforeMethod
+    public void clearTable() throws Exception {
+        conn.setAutoCommit(true);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM item");
+        }
+
+        conn.setAutoCommit(false);
+    }
+
+    private static ApiObject item(String code) {
+        ApiObject row = new ApiObject();
+        row.setString("code", code);
+
+        return row;
+    }
+
+    @Test
+    public void testKeysSet() throws Exception {
+        List<ApiObject> rows = List.of(item("a"), item("b"));
+        BatchSaver saver = new BatchSaver("item", "id", BatchSaver.KeyMode.INTEGER_KEY, 1);
+
+        assertTrue(saver.save(conn, rows));
+        conn.commit();
+
+        assertTrue(rows.get(0).isSet("id"));
+        assertTrue(rows.get(1).isSet("id"));
+    }
+
+    @Test
+    public void testKeysClearedOnRollback() throws Exception {
+        // The second chunk fails after the first chunk got its key
+        List<ApiObject> rows = List.of(item("a"), item("a"));
+        BatchSaver saver = new BatchSaver("item", "id", BatchSaver.KeyMode.INTEGER_KEY, 1);
+
+        assertFalse(saver.save(conn, rows));
+        assertTrue(rows.get(0).isSet("id"));
+
+        conn.rollback();
+        saver.clearGeneratedKeys();
+
+        assertFalse(rows.get(0).isSet("id"));
+        assertFalse(rows.get(1).isSet("id"));
+
+        // A retry inserts the row instead of updating a row that is not there
+        BatchSaver retry = new BatchSaver("item", "id", BatchSaver.KeyMode.INTEGER_KEY, 1);
+
+        assertTrue(retry.save(conn, List.of(rows.get(0))));
+        conn.commit();
+
+        try (Statement stmt = conn.createStatement(); var rs = stmt.executeQuery("SELECT COUNT(*) FROM item")) {
+            rs.next();
+            assertEquals(rs.getInt(1), 1);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.progbits.db.dataaccess;
+
+import java.util.concurrent.TimeUnit;
+import com.progbits.api.exception.ApiException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static CircuitBreaker tripped() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 0, OPEN_NANOS);
+
+        for (int i = 0; i < 20; i++) {
+            assertFalse(breaker.allow());
+            breaker.record(1000, true, false);
+        }
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+
+        return breaker;
+    }
+
+    private static void waitOpen() throws InterruptedException {
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(OPEN_NANOS) + 20);
+    }
+
+    @Test
+    public void testStaysClosedBelowRate() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 0, OPEN_NANOS);
+
+        for (int i = 0; i < 40; i++) {
+            breaker.record(1000, i % 4 == 0, false);
+        }
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testNeedsMinimumCalls() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 0, OPEN_NANOS);
+
+        for (int i = 0; i < 19; i++) {
+            breaker.record(1000, true, false);
+        }
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testSlowCountsAsFailed() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, TimeUnit.MILLISECONDS.toNanos(10), OPEN_NANOS);
+
+        for (int i = 0; i < 20; i++) {
+            breaker.record(TimeUnit.MILLISECONDS.toNanos(20), false, false);
+        }
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testOpenRejects() throws Exception {
+        CircuitBreaker breaker = tripped();
+
+        ApiException apx = expectThrows(ApiException.class, breaker::allow);
+
+        assertEquals(apx.getCode(), CircuitBreaker.CIRCUIT_OPEN);
+    }
+
+    @Test
+    public void testProbeSuccessCloses() throws Exception {
+        CircuitBreaker breaker = tripped();
+
+        waitOpen();
+
+        assertTrue(breaker.allow());
+        assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+
+        // Only one probe at a time
+        expectThrows(ApiException.class, breaker::allow);
+
+        breaker.record(1000, false, true);
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+        assertFalse(breaker.allow());
+    }
+
+    @Test
+    public void testProbeFailureReopens() throws Exception {
+        CircuitBreaker breaker = tripped();
+
+        waitOpen();
+
+        assertTrue(breaker.allow());
+
+        // A call started before the breaker opened does not decide
+        breaker.record(1000, false, false);
+        assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+
+        breaker.record(1000, true, true);
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+        expectThrows(ApiException.class, breaker::allow);
+    }
+
+    @Test
+    public void testCancelledProbeLetsNextCallProbe() throws Exception {
+        CircuitBreaker breaker = tripped();
+
+        waitOpen();
+
+        assertTrue(breaker.allow());
+
+        breaker.cancelProbe();
+
+        assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+        assertTrue(breaker.allow());
+    }
+
+    @Test
+    public void testDeadlineInQueueDoesNotFailProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 50, 0, OPEN_NANOS);
+        PoolGate gate = new PoolGate("test", 1, 10, 5000, false, breaker);
+
+        // Hold the only permit
+        boolean holder = gate.acquire();
+
+        for (int i = 0; i < 20; i++) {
+            breaker.record(1000, true, false);
+        }
+
+        waitOpen();
+
+        ApiException apx = expectThrows(ApiException.class, () -> gate.acquire(TimeUnit.MILLISECONDS.toNanos(10)));
+
+        assertEquals(apx.getCode(), Deadline.DEADLINE_EXCEEDED);
+        assertEquals(breaker.getState(), CircuitBreaker.State.HALF_OPEN);
+
+        gate.release(0, false, holder);
+
+        assertTrue(gate.acquire(TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+}
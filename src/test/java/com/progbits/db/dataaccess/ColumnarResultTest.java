@@ -0,0 +1,68 @@
+package com.progbits.db.dataaccess;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class ColumnarResultTest {
+
+    private Connection conn;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:columnar");
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testMoreRowsThanCapacityWithoutNulls() throws Exception {
+        ColumnarResult result;
+
+        try (Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT CAST(X AS INT) AS id, CAST(X AS DECIMAL(10,2)) AS amt FROM SYSTEM_RANGE(1, 3000)")) {
+            result = ColumnarResult.read(rs, 1000);
+        }
+
+        assertEquals(result.getRowCount(), 3000);
+
+        ColumnarResult.IntColumn ids = result.getIntColumn("ID");
+
+        assertTrue(ids.getNullBitmap().length >= (3000 >> 6) + 1);
+
+        for (int row = 0; row < 3000; row++) {
+            assertFalse(ids.isNull(row));
+            assertEquals(ids.getObject(row), row + 1);
+        }
+
+        assertEquals(result.getDecimalColumn("AMT").getDecimal(2999).intValue(), 3000);
+    }
+
+    @Test
+    public void testNullsPastCapacity() throws Exception {
+        ColumnarResult result;
+
+        try (Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT CASE WHEN X = 2500 THEN NULL ELSE X END AS n FROM SYSTEM_RANGE(1, 3000)")) {
+            result = ColumnarResult.read(rs, 100);
+        }
+
+        ColumnarResult.LongColumn col = result.getLongColumn("N");
+
+        assertTrue(col.isNull(2499));
+        assertFalse(col.isNull(2999));
+        assertEquals(col.getObject(2999), 3000L);
+    }
+}
@@ -0,0 +1,193 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class KeysetPageTest {
+
+    private Connection conn;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:keysetpage");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE item (id INT PRIMARY KEY, grp INT, name VARCHAR(20))");
+
+            for (int i = 1; i <= 10; i++) {
+                stmt.execute("INSERT INTO item VALUES (" + i + ", " + (i % 3) + ", 'n" + i + "')");
+            }
+        }
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    public void testTokenRoundTrip() throws Exception {
+        KeysetPage page = new KeysetPage("item", List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l"), 10);
+        Object[] values = {null, 7, 8L, 1.5d, true, new BigDecimal("12.340"), Timestamp.valueOf("2026-01-02 03:04:05.123456789"),
+            java.sql.Date.valueOf("2026-01-02"), LocalDateTime.of(2026, 1, 2, 3, 4, 5), OffsetDateTime.parse("2026-01-02T03:04:05+02:00"),
+            UUID.fromString("123e4567-e89b-12d3-a456-426614174000"), "text, with separators:|"};
+
+        Object[] decoded = page.decode(page.encode(values));
+
+        assertEquals(Arrays.asList(decoded), Arrays.asList(values));
+    }
+
+    @Test
+    public void testLocalDateReadsAsSqlDate() throws Exception {
+        KeysetPage page = new KeysetPage("item", List.of("created"), 10);
+
+        assertEquals(page.decode(page.encode(new Object[]{LocalDate.of(2026, 1, 2)}))[0], java.sql.Date.valueOf("2026-01-02"));
+    }
+
+    @Test
+    public void testEmptyToken() throws ApiException {
+        KeysetPage page = new KeysetPage("item", List.of("id"), 10);
+
+        assertNull(page.decode(null));
+        assertNull(page.decode(""));
+    }
+
+    @Test
+    public void testTokenForOtherSortKeys() throws Exception {
+        String token = new KeysetPage("item", List.of("id"), 10).encode(new Object[]{5});
+
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("item", List.of("id DESC"), 10).decode(token)).getCode(), 400);
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("other", List.of("id"), 10).decode(token)).getCode(), 400);
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("item", List.of("grp", "id"), 10).decode(token)).getCode(), 400);
+    }
+
+    @Test
+    public void testInvalidToken() throws ApiException {
+        KeysetPage page = new KeysetPage("item", List.of("id"), 10);
+
+        assertEquals(expectThrows(ApiException.class, () -> page.decode("not a token!")).getCode(), 400);
+        assertEquals(expectThrows(ApiException.class, () -> page.decode("AQ")).getCode(), 400);
+    }
+
+    @Test
+    public void testBuildSqlFirstPage() throws ApiException {
+        KeysetPage page = new KeysetPage("item", List.of("grp", "id DESC"), 20);
+        ApiObject search = new ApiObject();
+        search.setString("tableName", "item");
+        search.setInteger("grp", 1);
+        search.put("name", null);
+        List<Object> args = new ArrayList<>();
+
+        assertEquals(page.buildSql(DbDialect.POSTGRESQL, search, null, args),
+            "SELECT * FROM item WHERE grp = ? AND name IS NULL ORDER BY grp ASC, id DESC LIMIT 21");
+        assertEquals(args, List.of(1));
+    }
+
+    @Test
+    public void testBuildSqlRowValues() throws ApiException {
+        KeysetPage page = new KeysetPage("item", List.of("grp", "id"), 20);
+        ApiObject search = new ApiObject();
+        search.put("name", List.of("a", "b"));
+        List<Object> args = new ArrayList<>();
+
+        assertEquals(page.buildSql(DbDialect.H2, search, new Object[]{2, 7}, args),
+            "SELECT * FROM item WHERE name IN (?,?) AND (grp, id) > (?, ?) ORDER BY grp ASC, id ASC LIMIT 21");
+        assertEquals(args, List.of("a", "b", 2, 7));
+    }
+
+    @Test
+    public void testBuildSqlExpandedSeek() throws ApiException {
+        List<Object> args = new ArrayList<>();
+
+        // Mixed directions can not use a row value
+        assertEquals(new KeysetPage("item", List.of("grp", "id DESC"), 20).buildSql(DbDialect.POSTGRESQL, null, new Object[]{2, 7}, args),
+            "SELECT * FROM item WHERE ((grp > ?) OR (grp = ? AND id < ?)) ORDER BY grp ASC, id DESC LIMIT 21");
+        assertEquals(args, List.of(2, 2, 7));
+
+        args.clear();
+
+        assertEquals(new KeysetPage("item", List.of("grp", "id"), 20).buildSql(DbDialect.SQLSERVER, null, new Object[]{2, 7}, args),
+            "SELECT * FROM item WHERE ((grp > ?) OR (grp = ? AND id > ?)) ORDER BY grp ASC, id ASC OFFSET 0 ROWS FETCH NEXT 21 ROWS ONLY");
+        assertEquals(args, List.of(2, 2, 7));
+    }
+
+    @Test
+    public void testInvalidNames() {
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("item; DROP", List.of("id"), 10)).getCode(), 400);
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("item", List.of("id ASC DESC"), 10)).getCode(), 400);
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("item", List.of(), 10)).getCode(), 400);
+        assertEquals(expectThrows(ApiException.class, () -> new KeysetPage("item", List.of("id"), 0)).getCode(), 400);
+
+        ApiObject search = new ApiObject();
+        search.setInteger("grp = 1 OR 1", 1);
+
+        expectThrows(ApiException.class, () -> new KeysetPage("item", List.of("id"), 10)
+            .buildSql(DbDialect.H2, search, null, new ArrayList<>()));
+    }
+
+    @Test
+    public void testWalkPages() throws Exception {
+        for (var sortKeys : List.of(List.of("grp", "id"), List.of("grp DESC", "id"))) {
+            KeysetPage page = new KeysetPage("item", sortKeys, 3);
+            List<Integer> seen = new ArrayList<>();
+            String token = null;
+            int pages = 0;
+
+            do {
+                List<Object> args = new ArrayList<>();
+                String sql = page.buildSql(DbDialect.H2, null, page.decode(token), args);
+
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < args.size(); i++) {
+                        ps.setObject(i + 1, args.get(i));
+                    }
+
+                    ApiObject result = page.read(ps, null);
+
+                    for (var row : result.getList("root")) {
+                        seen.add(row.getInteger("ID"));
+                    }
+
+                    token = result.getString("next");
+                }
+
+                pages++;
+            } while (token != null);
+
+            List<Integer> expected = new ArrayList<>();
+            List<Integer> groups = sortKeys.get(0).endsWith("DESC") ? List.of(2, 1, 0) : List.of(0, 1, 2);
+
+            for (int grp : groups) {
+                for (int id = 1; id <= 10; id++) {
+                    if (id % 3 == grp) {
+                        expected.add(id);
+                    }
+                }
+            }
+
+            assertEquals(seen, expected);
+            assertEquals(pages, 4);
+        }
+    }
+}
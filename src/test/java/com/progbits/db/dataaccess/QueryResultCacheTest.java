@@ -0,0 +1,60 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.util.List;
+import com.progbits.api.model.ApiObject;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class QueryResultCacheTest {
+
+    private static final String SQL = "SELECT * FROM orders WHERE a = :{a}";
+
+    @Test
+    public void testSeparatorInValue() {
+        ApiObject one = new ApiObject();
+        one.setString("a", "x,b=y");
+
+        ApiObject two = new ApiObject();
+        two.setString("a", "x");
+        two.setString("b", "y");
+
+        assertNotEquals(QueryResultCache.key(SQL, one), QueryResultCache.key(SQL, two));
+    }
+
+    @Test
+    public void testArrayItemWithComma() {
+        assertNotEquals(QueryResultCache.key(SQL, new Object[]{"a, b"}), QueryResultCache.key(SQL, new Object[]{"a", "b"}));
+        assertNotEquals(QueryResultCache.key(SQL, new Object[]{List.of("a, b")}), QueryResultCache.key(SQL, new Object[]{List.of("a", "b")}));
+    }
+
+    @Test
+    public void testTypeTag() {
+        assertNotEquals(QueryResultCache.key(SQL, new Object[]{"1"}), QueryResultCache.key(SQL, new Object[]{1}));
+        assertNotEquals(QueryResultCache.key(SQL, new Object[]{"null"}), QueryResultCache.key(SQL, new Object[]{null}));
+        assertNotEquals(QueryResultCache.key(SQL, new Object[]{1}), QueryResultCache.key(SQL, new Object[]{new BigDecimal("1")}));
+    }
+
+    @Test
+    public void testSqlWithSeparator() {
+        assertNotEquals(QueryResultCache.key("SELECT 1|", new Object[]{"x"}), QueryResultCache.key("SELECT 1", new Object[]{"|x"}));
+    }
+
+    @Test
+    public void testSameValuesSameKey() {
+        ApiObject one = new ApiObject();
+        one.setString("a", "x");
+        one.setInteger("b", 5);
+
+        ApiObject two = new ApiObject();
+        two.setString("a", "x");
+        two.setInteger("b", 5);
+
+        assertEquals(QueryResultCache.key(SQL, one), QueryResultCache.key(SQL, two));
+        assertEquals(QueryResultCache.key(SQL, new Object[]{new byte[]{1, 2}}), QueryResultCache.key(SQL, new Object[]{new byte[]{1, 2}}));
+    }
+}
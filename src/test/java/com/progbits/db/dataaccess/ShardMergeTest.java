@@ -0,0 +1,156 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class ShardMergeTest {
+
+    private static ApiObject row(Object id, String name) {
+        ApiObject row = new ApiObject();
+        row.put("id", id);
+        row.setString("name", name);
+
+        return row;
+    }
+
+    private static Stream<ApiObject> shard(Object... ids) {
+        List<ApiObject> rows = new ArrayList<>();
+
+        for (Object id : ids) {
+            rows.add(row(id, "r" + id));
+        }
+
+        return rows.stream();
+    }
+
+    private static List<Object> ids(Stream<ApiObject> merged) {
+        try (merged) {
+            return merged.map(r -> r.get("id")).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testMergeAscending() throws ApiException {
+        ShardMerge merge = new ShardMerge(List.of("id"), 0);
+
+        List<Object> ids = ids(merge.merge(List.of(shard(1, 4, 7), shard(2, 5, 8), shard(3, 6, 9))));
+
+        assertEquals(ids, List.of(1, 2, 3, 4, 5, 6, 7, 8, 9));
+    }
+
+    @Test
+    public void testMergeDescending() throws ApiException {
+        ShardMerge merge = new ShardMerge(List.of("id DESC"), 0);
+
+        List<Object> ids = ids(merge.merge(List.of(shard(9, 3), shard(8, 7, 1), shard())));
+
+        assertEquals(ids, List.of(9, 8, 7, 3, 1));
+    }
+
+    @Test
+    public void testLimitStopsReading() throws ApiException {
+        ShardMerge merge = new ShardMerge(List.of("id"), 3);
+        AtomicInteger read = new AtomicInteger();
+
+        Stream<ApiObject> counted = shard(1, 2, 3, 4, 5, 6).peek(r -> read.incrementAndGet());
+
+        List<Object> ids = ids(merge.merge(List.of(counted, shard(10, 11))));
+
+        assertEquals(ids, List.of(1, 2, 3));
+        // The current row of the first pool, one past the limit
+        assertEquals(read.get(), 4);
+    }
+
+    @Test
+    public void testLimitWithoutSortKeys() throws ApiException {
+        ShardMerge merge = new ShardMerge(null, 4);
+
+        List<Object> ids = ids(merge.merge(List.of(shard(5, 1, 3), shard(2, 9))));
+
+        assertEquals(ids, List.of(5, 1, 3, 2));
+    }
+
+    @Test
+    public void testNullsLastAscendingFirstDescending() throws ApiException {
+        List<Object> asc = ids(new ShardMerge(List.of("id ASC"), 0).merge(List.of(shard(1, 3, null), shard(2, null))));
+
+        assertEquals(asc, Arrays.asList(1, 2, 3, null, null));
+
+        List<Object> desc = ids(new ShardMerge(List.of("id DESC"), 0).merge(List.of(shard(null, 3, 1), shard(null, 2))));
+
+        assertEquals(desc, Arrays.asList(null, null, 3, 2, 1));
+    }
+
+    @Test
+    public void testEqualKeysKeepPoolOrder() throws ApiException {
+        ShardMerge merge = new ShardMerge(List.of("id"), 0);
+
+        try (Stream<ApiObject> merged = merge.merge(List.of(
+            Stream.of(row(1, "a0"), row(2, "a1")), Stream.of(row(1, "b0"), row(2, "b1"))))) {
+            assertEquals(merged.map(r -> r.getString("name")).collect(Collectors.toList()), List.of("a0", "b0", "a1", "b1"));
+        }
+    }
+
+    @Test
+    public void testSecondKeyAndColumnCase() throws ApiException {
+        ShardMerge merge = new ShardMerge(List.of("t.NAME DESC", "ID"), 0);
+
+        List<Object> ids = ids(merge.merge(List.of(
+            Stream.of(row(3, "b"), row(1, "a")), Stream.of(row(2, "b"), row(4, "a")))));
+
+        assertEquals(ids, List.of(2, 3, 1, 4));
+    }
+
+    @Test
+    public void testCompareMixedNumbers() {
+        assertEquals(ShardMerge.compareValues(2, 10L), -1);
+        assertEquals(ShardMerge.compareValues(new BigDecimal("2.50"), 2.5d), 0);
+        assertTrue(ShardMerge.compareValues(null, 1) > 0);
+        assertTrue(ShardMerge.compareValues(1, null) < 0);
+    }
+
+    @Test
+    public void testCloseClosesShards() throws ApiException {
+        AtomicInteger closed = new AtomicInteger();
+        ShardMerge merge = new ShardMerge(List.of("id"), 1);
+
+        ids(merge.merge(List.of(shard(1).onClose(closed::incrementAndGet), shard(2).onClose(closed::incrementAndGet))));
+
+        assertEquals(closed.get(), 2);
+    }
+
+    @Test
+    public void testShardSql() throws ApiException {
+        ShardMerge merge = new ShardMerge(List.of("o.created DESC", "id"), 50);
+
+        assertEquals(merge.shardSql(DbDialect.POSTGRESQL, "SELECT * FROM orders o"),
+            "SELECT * FROM (SELECT * FROM orders o) shard_rows ORDER BY created DESC, id ASC LIMIT 50");
+        assertEquals(merge.shardSql(DbDialect.SQLSERVER, "SELECT * FROM orders o"),
+            "SELECT * FROM (SELECT * FROM orders o) shard_rows ORDER BY created DESC, id ASC OFFSET 0 ROWS FETCH NEXT 50 ROWS ONLY");
+
+        // OFFSET FETCH needs an ORDER BY, the merge applies the limit
+        assertEquals(new ShardMerge(null, 50).shardSql(DbDialect.ORACLE, "SELECT * FROM orders"), "SELECT * FROM orders");
+    }
+
+    @Test
+    public void testInvalidSortKey() {
+        ApiException ex = expectThrows(ApiException.class, () -> new ShardMerge(List.of("id; DROP TABLE x"), 0));
+        assertEquals(ex.getCode(), 400);
+
+        expectThrows(ApiException.class, () -> new ShardMerge(List.of("id SIDEWAYS"), 0));
+        expectThrows(ApiException.class, () -> new ShardMerge(List.of("id"), -1));
+    }
+}
@@ -0,0 +1,90 @@
+package com.progbits.db.dataaccess;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class ShardRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    public void testDistribution() throws ApiException {
+        List<String> pools = List.of("db1", "db2", "db3", "db4");
+        ShardRing ring = new ShardRing("orders", pools, "customerId");
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.poolFor(i), 1, Integer::sum);
+        }
+
+        assertEquals(counts.keySet(), Set.copyOf(pools));
+
+        for (var count : counts.values()) {
+            // 160 points per pool keep each share within 20% of even
+            assertTrue(Math.abs(count - KEYS / pools.size()) < KEYS / pools.size() / 5, counts.toString());
+        }
+    }
+
+    @Test
+    public void testAddingPoolMovesFewKeys() throws ApiException {
+        ShardRing three = new ShardRing("orders", List.of("db1", "db2", "db3"), null);
+        ShardRing four = new ShardRing("orders", List.of("db1", "db2", "db3", "db4"), null);
+        int moved = 0;
+
+        for (int i = 0; i < KEYS; i++) {
+            String before = three.poolFor(i);
+            String after = four.poolFor(i);
+
+            if (!before.equals(after)) {
+                // Keys only move to the new pool
+                assertEquals(after, "db4");
+                moved++;
+            }
+        }
+
+        // About a quarter, hash modulo n would move three quarters
+        assertTrue(moved > KEYS / 6 && moved < KEYS / 3, "moved " + moved);
+    }
+
+    @Test
+    public void testSameKeyTextSamePool() throws ApiException {
+        ShardRing ring = new ShardRing("orders", List.of("db1", "db2", "db3", "db4"), "customerId");
+
+        for (int i = 0; i < 1000; i++) {
+            String pool = ring.poolFor(i);
+
+            assertEquals(ring.poolFor((long) i), pool);
+            assertEquals(ring.poolFor(String.valueOf(i)), pool);
+            assertEquals(ring.poolFor(new BigDecimal(i + ".00")), pool);
+        }
+    }
+
+    @Test
+    public void testPoolForRow() throws ApiException {
+        ShardRing ring = new ShardRing("orders", List.of("db1", "db2"), "customerId");
+        ApiObject row = new ApiObject();
+        row.setInteger("customerId", 42);
+
+        assertEquals(ring.poolFor(row), ring.poolFor(42));
+
+        row.remove("customerId");
+        assertEquals(expectThrows(ApiException.class, () -> ring.poolFor(row)).getCode(), 400);
+
+        row.put("customerId", List.of(1, 2));
+        assertEquals(expectThrows(ApiException.class, () -> ring.poolFor(row)).getCode(), 400);
+
+        ShardRing noKey = new ShardRing("orders", List.of("db1", "db2"), null);
+        assertEquals(expectThrows(ApiException.class, () -> noKey.poolFor(row)).getCode(), 400);
+    }
+}
@@ -0,0 +1,77 @@
+package com.progbits.db.dataaccess;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import com.progbits.api.exception.ApiException;
+import com.progbits.api.model.ApiObject;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author kscarr73
+ */
+public class WriteBehindBufferTest {
+
+    private static ApiObject row(int id) {
+        ApiObject row = new ApiObject();
+        row.setInteger("id", id);
+
+        return row;
+    }
+
+    @Test
+    public void testFailingWriterBacksOff() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", "counters", "id", BatchSaver.KeyMode.INTEGER_KEY,
+            100, 2, 50, 0, rows -> {
+                calls.incrementAndGet();
+
+                throw new ApiException(503, "Database Down");
+            });
+
+        buffer.start();
+        buffer.put(row(1));
+        buffer.put(row(2));
+
+        Thread.sleep(1000);
+
+        // A full batch is due at once, without the backoff this is thousands of tries
+        assertTrue(calls.get() >= 1 && calls.get() <= 5, "writes tried: " + calls.get());
+        assertEquals(buffer.getStats().getInteger("pending").intValue(), 2);
+
+        buffer.close();
+    }
+
+    @Test
+    public void testWritesAfterFailures() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", "counters", "id", BatchSaver.KeyMode.INTEGER_KEY,
+            100, 2, 50, 0, rows -> {
+                if (calls.incrementAndGet() <= 2) {
+                    throw new IllegalStateException("Connection Reset");
+                }
+
+                written.addAndGet(rows.size());
+
+                return null;
+            });
+
+        buffer.start();
+        buffer.put(row(1));
+        buffer.put(row(2));
+
+        long end = System.currentTimeMillis() + 5000;
+
+        while (written.get() < 2 && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(written.get(), 2);
+        assertEquals(buffer.getStats().getLong("failures").longValue(), 2L);
+
+        buffer.close();
+    }
+}